@@ -19,120 +19,56 @@ package de.intranda.goobi.plugins;
  *
  */
 
-import java.io.IOException;
 import java.util.HashMap;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
-import de.intranda.goobi.plugins.generateproperty.ReflectionPathParser;
+import de.intranda.goobi.plugins.generateproperty.AsyncGenerationExecutor;
+import de.intranda.goobi.plugins.generateproperty.GenerationContext;
+import de.intranda.goobi.plugins.generateproperty.Phase;
+import de.intranda.goobi.plugins.generateproperty.PluginConfiguration;
+import de.intranda.goobi.plugins.generateproperty.PluginConfigurationCache;
+import de.intranda.goobi.plugins.generateproperty.ProcessMetadata;
+import de.intranda.goobi.plugins.generateproperty.PropertyChangeSet;
+import de.intranda.goobi.plugins.generateproperty.PropertyGenerator;
+import de.intranda.goobi.plugins.generateproperty.PropertyManagerWriter;
+import de.intranda.goobi.plugins.generateproperty.PropertyWriter;
+import de.intranda.goobi.plugins.generateproperty.WriteBehindPropertyWriter;
+import de.sub.goobi.helper.CloseStepHelper;
 import de.sub.goobi.helper.Helper;
 import de.sub.goobi.helper.VariableReplacer;
-import de.sub.goobi.helper.exceptions.SwapException;
-import de.sub.goobi.persistence.managers.PropertyManager;
-import lombok.Data;
-import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
-import org.apache.commons.configuration.HierarchicalConfiguration;
-import org.apache.commons.configuration.SubnodeConfiguration;
+import de.sub.goobi.helper.enums.StepStatus;
+import de.sub.goobi.helper.exceptions.DAOException;
+import de.sub.goobi.persistence.managers.StepManager;
 import org.apache.commons.digester.plugins.PluginException;
-import org.goobi.beans.GoobiProperty;
 import org.goobi.beans.Process;
 import org.goobi.beans.Step;
 import org.goobi.production.enums.*;
 import org.goobi.production.plugin.interfaces.IStepPluginVersion2;
 
-import de.sub.goobi.config.ConfigPlugins;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
 import net.xeoh.plugins.base.annotations.PluginImplementation;
 import ugh.dl.DigitalDocument;
-import ugh.dl.Fileformat;
-import ugh.exceptions.PreferencesException;
-import ugh.exceptions.ReadException;
 
 @PluginImplementation
 @Log4j2
 public class GeneratePropertyStepPlugin implements IStepPluginVersion2 {
-    private static final Pattern SPECIAL_PATTERN = Pattern.compile("\\{\\{(.*?)\\}\\}");
-    
     @Getter
     private String title = "intranda_step_generate_property";
+    // the state of a run is set once in initialize() and then only read, also by the threads of the asynchronous and parallel evaluation
     @Getter
-    private Process process;
+    private volatile Process process;
     @Getter
-    private Step step;
+    private volatile Step step;
 
-    private List<PropertyDefinition> propertyDefinitions;
+    private volatile PluginConfiguration configuration;
     @Getter
-    private VariableReplacer variableReplacer;
+    private volatile GenerationContext context;
     @Getter
-    private DigitalDocument digitalDocument;
-
-    private String returnPath;
-
-    @Data
-    @RequiredArgsConstructor
-    class PropertyDefinition {
-        @NonNull
-        private String name;
-        @NonNull
-        private String rawString;
-        @NonNull
-        private List<PropertyReplacement> replacements;
+    @Setter
+    private volatile PropertyWriter propertyWriter = new PropertyManagerWriter();
 
-        public String generate() throws PluginException {
-            var result = specialReplacement(rawString);
-            result = getVariableReplacer().replace(result);
-            for (PropertyReplacement r : replacements) {
-                result = r.replace(result);
-            }
-            return result;
-        }
-
-        private String specialReplacement(@NonNull String value) {
-            Matcher matcher = SPECIAL_PATTERN.matcher(value);
-            while (matcher.find()) {
-                String replacement = matcher.group(1);
-                value = value.replace("{{" + replacement + "}}", specialReplacementValue(replacement));
-                matcher = SPECIAL_PATTERN.matcher(value);
-            }
-            return value;
-        }
-
-        private String specialReplacementValue(String value) {
-            try {
-                return ReflectionPathParser.parse(process, value);
-            } catch (NullPointerException e) {
-                return "null";
-            } catch (NoSuchMethodException e) {
-                String message = "Error during special replacement, no such method: " + e.getMessage();
-                Helper.setFehlerMeldung(message);
-                Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR, message);
-                log.error(message, e);
-                return value;
-            } catch (Exception e) {
-                String message = "Error during special replacement: " + e.getMessage();
-                Helper.setFehlerMeldung(message);
-                Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR, message);
-                log.error(message, e);
-                throw new RuntimeException(message, e);
-            }
-        }
-    }
-
-    @RequiredArgsConstructor
-    class PropertyReplacement {
-        public String replace(String value) {
-            return value.replaceAll(regex, replacement);
-        }
-
-        @NonNull
-        private String regex;
-        @NonNull
-        private String replacement;
-    }
+    private volatile String returnPath;
 
     @Override
     public void initialize(Step step, String returnPath) {
@@ -141,11 +77,12 @@ public class GeneratePropertyStepPlugin implements IStepPluginVersion2 {
         this.process = step.getProzess();
         this.returnPath = returnPath;
         // TODO: Plugin initialization should also throw exceptions!
+        this.context = new GenerationContext(process, step);
         try {
-            this.digitalDocument = loadDigitalDocument();
-            this.variableReplacer = loadVariableReplacer();
-            SubnodeConfiguration myconfig = ConfigPlugins.getProjectAndStepConfig(title, step);
-            loadPluginConfiguration(myconfig);
+            this.configuration = PluginConfigurationCache.get(title, step);
+            if (configuration.isWriteBehind()) {
+                this.propertyWriter = new WriteBehindPropertyWriter(configuration);
+            }
             log.info("GenerateProperty step plugin initialized");
         } catch (PluginException e) {
             log.error(e.getMessage());
@@ -153,62 +90,31 @@ public class GeneratePropertyStepPlugin implements IStepPluginVersion2 {
         }
     }
 
-    private DigitalDocument loadDigitalDocument() throws PluginException {
-        try {
-            return process.readMetadataFile().getDigitalDocument();
-        } catch (ReadException | IOException | SwapException | PreferencesException | NullPointerException e1) {
-            throw new PluginException("Errors happened while trying to initialize the Fileformat and VariableReplacer", e1);
-        }
+    public ProcessMetadata getMetadata() {
+        return context.getMetadata();
     }
 
-    private VariableReplacer loadVariableReplacer() throws PluginException {
+    public VariableReplacer getVariableReplacer() {
         try {
-            Fileformat fileformat = process.readMetadataFile();
-            return new VariableReplacer(fileformat != null ? fileformat.getDigitalDocument() : null,
-                    process.getRegelsatz().getPreferences(), process, step);
-        } catch (ReadException | IOException | SwapException | PreferencesException e1) {
-            throw new PluginException("Errors happened while trying to initialize the Fileformat and VariableReplacer", e1);
+            return getMetadata().getVariableReplacer();
+        } catch (PluginException e) {
+            log.error(e.getMessage(), e);
+            return null;
         }
     }
 
-    private void loadPluginConfiguration(SubnodeConfiguration config) throws PluginException {
+    /**
+     * @return the digital document of the process. If the metadata cache is enabled, it is shared with other runs and must not be modified.
+     */
+    public DigitalDocument getDigitalDocument() {
         try {
-            propertyDefinitions = config.configurationsAt("property")
-                    .stream()
-                    .map(this::parsePropertyDefinitions)
-                    .collect(Collectors.toList());
-        } catch (IllegalArgumentException e) {
-            throw new PluginException("Error during property definition parsing!", e);
+            return getMetadata().getDigitalDocument();
+        } catch (PluginException e) {
+            log.error(e.getMessage(), e);
+            return null;
         }
     }
 
-    private PropertyDefinition parsePropertyDefinitions(HierarchicalConfiguration config) throws IllegalArgumentException {
-        String name = config.getString("@name");
-        String value = config.getString("@value");
-        List<PropertyReplacement> replacements = parseReplacements(config.configurationsAt("replace"));
-        return new PropertyDefinition(name, value, replacements);
-    }
-
-    private @NonNull List<PropertyReplacement> parseReplacements(
-            List<HierarchicalConfiguration> replacementConfigs) {
-        return replacementConfigs.stream()
-                .map(config -> new PropertyReplacement(config.getString("@regex", ""),
-                        config.getString("@replacement", "")))
-                .toList();
-    }
-
-    private GoobiProperty savePropertyWithValue(String name, String value) {
-        GoobiProperty property = process.getProperties().stream()
-                .filter(p -> name.equals(p.getPropertyName()))
-                .findFirst()
-                .orElse(new GoobiProperty(GoobiProperty.PropertyOwnerType.PROCESS));
-        property.setOwner(process);
-        property.setPropertyName(name);
-        property.setPropertyValue(value);
-        PropertyManager.saveProperty(property);
-        return property;
-    }
-
     @Override
     public PluginGuiType getPluginGuiType() {
         return PluginGuiType.NONE;
@@ -246,23 +152,75 @@ public class GeneratePropertyStepPlugin implements IStepPluginVersion2 {
     
     @Override
     public boolean execute() {
-        PluginReturnValue ret = run();
-        return ret != PluginReturnValue.ERROR;
+        if (configuration == null) {
+            log.error("GenerateProperty step plugin was not initialized correctly");
+            return false;
+        }
+        // callers of execute() close the step themselves, so the asynchronous mode must not close it a second time
+        return generate() == PluginReturnValue.FINISH;
     }
 
     @Override
     public PluginReturnValue run() {
+        if (configuration == null) {
+            log.error("GenerateProperty step plugin was not initialized correctly");
+            return PluginReturnValue.ERROR;
+        }
+        if (configuration.isAsync()) {
+            if (AsyncGenerationExecutor.getInstance().submit(this::runInBackground, configuration.getAsyncConcurrency(),
+                    configuration.getAsyncQueueSize())) {
+                log.debug("Process {}: property generation was queued", process.getId());
+                return PluginReturnValue.WAIT;
+            }
+            log.warn("Process {}: the queue for asynchronous property generation is full, generating the properties synchronously",
+                    process.getId());
+        }
+        return generate();
+    }
+
+    /**
+     * Generate the properties on a thread of the {@link AsyncGenerationExecutor} and close the waiting step or set it to error
+     */
+    private void runInBackground() {
+        if (generate() == PluginReturnValue.FINISH) {
+            CloseStepHelper.closeStep(step, null);
+            return;
+        }
+        Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR,
+                "Asynchronous property generation failed in step '" + step.getTitel() + "'");
+        step.setBearbeitungsstatusEnum(StepStatus.ERROR);
+        try {
+            StepManager.saveStep(step);
+        } catch (DAOException e) {
+            log.error("Cannot set step {} of process {} to error: {}", step.getId(), process.getId(), e.getMessage(), e);
+        }
+    }
+
+    private PluginReturnValue generate() {
+        long start = System.nanoTime();
         try {
-            for (PropertyDefinition pd : propertyDefinitions) {
-                String propertyName = pd.getName();
-                String propertyValue = pd.generate();
-                savePropertyWithValue(propertyName, propertyValue);
+            PropertyChangeSet changes = PropertyGenerator.generate(context, configuration);
+            long writeStart = System.nanoTime();
+            propertyWriter.write(changes);
+            context.record(Phase.PERSISTENCE, writeStart);
+            context.record(Phase.TOTAL, start);
+            if (log.isDebugEnabled()) {
+                log.debug("Process {}: wrote {} changed properties, skipped {} unchanged properties ({})", process.getId(),
+                        changes.getChanges().size(), changes.getUnchangedCount(), context.getTimingSummary());
             }
             log.info("GenerateProperty step plugin executed");
             return PluginReturnValue.FINISH;
         } catch (PluginException e) {
             log.error("Error during property generation: {}", e.getMessage(), e);
             return PluginReturnValue.ERROR;
+        } catch (RuntimeException e) {
+            // e.g. a failed special replacement, a waiting asynchronous step has to be set to error as well
+            log.error("Unexpected error during property generation: {}", e.getMessage(), e);
+            return PluginReturnValue.ERROR;
+        } finally {
+            if (!context.getSpecialReplacementErrors().isEmpty()) {
+                log.error("Process {}: errors during special replacement:\n{}", process.getId(), context.getSpecialReplacementErrors().getSummary());
+            }
         }
     }
 }
@@ -0,0 +1,134 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Server wide executor for step runs in the asynchronous mode.
+ *
+ * Every task runs on its own virtual thread, but never more than {@link #getConcurrency() concurrency} tasks at the same time. Further tasks
+ * wait in a queue of at most {@link #getQueueSize() queueSize} entries. If the queue is full, {@link #submit(Runnable, int, int)} rejects the
+ * task and the caller has to run it itself. The limits are taken from the last submitted task, so they should be the same in all configuration
+ * blocks. The executor is registered as MXBean under <code>de.intranda.goobi.plugins:type=GenerateProperty,name=AsyncExecutor</code>.
+ */
+@Log4j2
+public class AsyncGenerationExecutor implements AsyncGenerationMXBean {
+    private static final AsyncGenerationExecutor INSTANCE = MBeans.register(new AsyncGenerationExecutor(),
+            "de.intranda.goobi.plugins:type=GenerateProperty,name=AsyncExecutor", "the asynchronous executor");
+
+    private final Deque<Runnable> queue = new ArrayDeque<>();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private int running;
+    private int concurrency = 1;
+    private int queueSize;
+
+    AsyncGenerationExecutor() {
+    }
+
+    public static AsyncGenerationExecutor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Run a task on a virtual thread as soon as a slot is free
+     *
+     * @param task the task to run
+     * @param concurrency maximum number of tasks that run at the same time
+     * @param queueSize maximum number of tasks that wait for a free slot
+     * @return false if the queue is full and the task was not accepted
+     */
+    public boolean submit(Runnable task, int concurrency, int queueSize) {
+        synchronized (queue) {
+            this.concurrency = Math.max(concurrency, 1);
+            this.queueSize = Math.max(queueSize, 0);
+            if (running >= this.concurrency && queue.size() >= this.queueSize) {
+                rejected.increment();
+                return false;
+            }
+            queue.add(task);
+        }
+        startQueuedTasks();
+        return true;
+    }
+
+    private void start(Runnable task) {
+        Thread.ofVirtual().name("generate-property-async").start(() -> runAndContinue(task));
+    }
+
+    private void runAndContinue(Runnable task) {
+        Runnable next = task;
+        while (next != null) {
+            try {
+                next.run();
+            } catch (Throwable t) {
+                // keep the loop alive, otherwise the slot of this thread would never be released
+                log.error("Unexpected error during asynchronous property generation: {}", t.getMessage(), t);
+            } finally {
+                completed.increment();
+            }
+            synchronized (queue) {
+                // a lowered limit takes effect as soon as enough tasks have finished
+                next = running <= concurrency ? queue.poll() : null;
+                if (next == null) {
+                    running--;
+                }
+            }
+        }
+    }
+
+    private void startQueuedTasks() {
+        while (true) {
+            Runnable task;
+            synchronized (queue) {
+                if (running >= concurrency || queue.isEmpty()) {
+                    return;
+                }
+                task = queue.poll();
+                running++;
+            }
+            start(task);
+        }
+    }
+
+    @Override
+    public int getConcurrency() {
+        synchronized (queue) {
+            return concurrency;
+        }
+    }
+
+    @Override
+    public int getQueueSize() {
+        synchronized (queue) {
+            return queueSize;
+        }
+    }
+
+    @Override
+    public int getRunning() {
+        synchronized (queue) {
+            return running;
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    @Override
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,19 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+/**
+ * JMX view of the {@link AsyncGenerationExecutor} of this Goobi server.
+ */
+public interface AsyncGenerationMXBean {
+
+    int getConcurrency();
+
+    int getQueueSize();
+
+    int getRunning();
+
+    int getQueueDepth();
+
+    long getCompleted();
+
+    long getRejected();
+}
@@ -0,0 +1,61 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+/**
+ * Wraps the input of a {@link java.util.regex.Matcher} to limit the time a match may take.
+ *
+ * A backtracking regular expression reads the same characters over and over again. Every few thousand reads, the deadline and the interrupt flag
+ * of the current thread are checked and the match is aborted with a {@link BudgetExceededException}.
+ */
+final class BudgetedCharSequence implements CharSequence {
+    private static final int CHECK_INTERVAL = 4096;
+
+    private final CharSequence value;
+    private final long deadline;
+    private int countdown = CHECK_INTERVAL;
+
+    /**
+     * @param value the text to match
+     * @param timeoutMillis the time the match may take in milliseconds
+     */
+    BudgetedCharSequence(CharSequence value, long timeoutMillis) {
+        this.value = value;
+        this.deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (--countdown == 0) {
+            countdown = CHECK_INTERVAL;
+            if (System.nanoTime() - deadline > 0 || Thread.currentThread().isInterrupted()) {
+                throw new BudgetExceededException();
+            }
+        }
+        return value.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return value.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return value.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return value.toString();
+    }
+
+    /**
+     * Thrown from within the regular expression engine when the time budget is used up
+     */
+    static final class BudgetExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BudgetExceededException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Remembers how far a bulk run got through its input.
+ *
+ * Processes are finished out of order, so the checkpoint only advances over the contiguous range of finished input positions. After a restart,
+ * every position below the stored value is skipped. Positions above it may be processed a second time, which is harmless because unchanged values
+ * are not written again. Positions that failed are remembered separately, so they are tried again after a restart although the checkpoint moved
+ * past them. The file contains the position in the first line and one failed position per further line.
+ */
+public class BulkCheckpoint {
+    private final Path file;
+    private final TreeSet<Long> finishedAhead = new TreeSet<>();
+    private final TreeSet<Long> failed = new TreeSet<>();
+    private long position;
+
+    public BulkCheckpoint(Path file) throws IOException {
+        this.file = file;
+        if (Files.exists(file)) {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i).trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (i == 0) {
+                    position = Long.parseLong(line);
+                } else {
+                    failed.add(Long.parseLong(line));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of input positions that are finished, apart from the failed ones these can be skipped
+     */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the failed input positions below {@link #getPosition()}, in ascending order
+     */
+    public synchronized List<Long> getFailed() {
+        return List.copyOf(failed.headSet(position));
+    }
+
+    /**
+     * @param inputPosition position in the input
+     * @return true if the position was finished successfully in a previous run and can be skipped
+     */
+    public synchronized boolean isFinished(long inputPosition) {
+        return inputPosition < position && !failed.contains(inputPosition);
+    }
+
+    /**
+     * Record a successfully written position
+     *
+     * @param inputPosition position in the input
+     */
+    public synchronized void markFinished(long inputPosition) {
+        failed.remove(inputPosition);
+        advance(inputPosition);
+    }
+
+    /**
+     * Record a position that could not be generated or written. It does not hold up the checkpoint, but is tried again after a restart.
+     *
+     * @param inputPosition position in the input
+     */
+    public synchronized void markFailed(long inputPosition) {
+        failed.add(inputPosition);
+        advance(inputPosition);
+    }
+
+    private void advance(long inputPosition) {
+        if (inputPosition < position) {
+            return;
+        }
+        finishedAhead.add(inputPosition);
+        while (!finishedAhead.isEmpty() && finishedAhead.first() == position) {
+            finishedAhead.pollFirst();
+            position++;
+        }
+    }
+
+    public synchronized void save() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        // failed positions above the checkpoint are processed again anyway
+        String content = failed.headSet(position)
+                .stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining("\n", position + "\n", ""));
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
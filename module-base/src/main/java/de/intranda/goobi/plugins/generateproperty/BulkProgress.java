@@ -0,0 +1,85 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Counters of a bulk regeneration run. All methods are thread-safe.
+ */
+public class BulkProgress {
+    private final long startTime = System.nanoTime();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder changedProcesses = new LongAdder();
+    private final LongAdder writtenProperties = new LongAdder();
+    private final LongAdder unchangedProperties = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Map<String, LongAdder> specialReplacementErrors = new ConcurrentHashMap<>();
+
+    void recordSuccess(PropertyChangeSet changes) {
+        processed.increment();
+        unchangedProperties.add(changes.getUnchangedCount());
+        if (!changes.isEmpty()) {
+            changedProcesses.increment();
+            writtenProperties.add(changes.getChanges().size());
+        }
+    }
+
+    void recordFailure() {
+        processed.increment();
+        failed.increment();
+    }
+
+    void recordSpecialReplacementErrors(SpecialReplacementErrors errors) {
+        errors.getCounts().keySet().forEach(error -> specialReplacementErrors.computeIfAbsent(error, key -> new LongAdder()).increment());
+    }
+
+    public long getProcessed() {
+        return processed.sum();
+    }
+
+    public long getChangedProcesses() {
+        return changedProcesses.sum();
+    }
+
+    public long getWrittenProperties() {
+        return writtenProperties.sum();
+    }
+
+    public long getUnchangedProperties() {
+        return unchangedProperties.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return processed processes per second since the run was started
+     */
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - startTime) / 1_000_000_000d;
+        return seconds > 0 ? getProcessed() / seconds : 0;
+    }
+
+    /**
+     * @param limit maximum number of paths
+     * @return the failed <code>{{...}}</code> paths with the number of affected processes, the most frequent first
+     */
+    public String getSpecialReplacementErrorSummary(int limit) {
+        return specialReplacementErrors.entrySet()
+                .stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> entry) -> entry.getValue().sum()).reversed())
+                .limit(limit)
+                .map(entry -> entry.getKey() + " in " + entry.getValue().sum() + " processes")
+                .collect(Collectors.joining(", "));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d processes (%d changed, %d failed), %d properties written, %d unchanged, %.1f processes/s", getProcessed(),
+                getChangedProcesses(), getFailed(), getWrittenProperties(), getUnchangedProperties(), getThroughput());
+    }
+}
@@ -0,0 +1,283 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.apache.commons.digester.plugins.PluginException;
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+
+import de.sub.goobi.persistence.managers.ProcessManager;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Regenerates the configured properties for a large number of existing processes, e.g. after a mapping rule was changed.
+ *
+ * Processes are evaluated on virtual threads, but never more than {@link #setConcurrency(int) concurrency} at the same time. The generated
+ * changes are handed over to a single writer thread through a bounded queue, so neither the metadata storage nor the database get more load
+ * than configured. If the queue is full, the evaluation waits for the writer. The writer takes up to {@link #setBatchSize(int) batchSize}
+ * results from the queue at once and saves the checkpoint after each of these batches, the processes themselves are still written one after
+ * the other. If the writer fails with an unexpected error, the run is aborted: the remaining processes are not evaluated anymore and
+ * {@link #run(Stream)} throws an exception. Failed <code>{{...}}</code> paths are not logged for every process, but summarized together with
+ * the progress.
+ */
+@Log4j2
+public class BulkPropertyGenerator {
+    private static final Result END_OF_INPUT = new Result(-1, null, null, null);
+    private static final int LOGGED_ERROR_PATHS = 10;
+    private static final long OFFER_TIMEOUT = 100;
+
+    private final String pluginTitle;
+    private final String stepTitle;
+    private final ProcessEvaluator evaluator;
+
+    /**
+     * maximum number of processes that are evaluated at the same time
+     */
+    @Setter
+    private int concurrency = 8;
+    /**
+     * maximum number of results the writer takes from the queue at once, the checkpoint is saved after each batch
+     */
+    @Setter
+    private int batchSize = 100;
+    /**
+     * interval for progress messages in milliseconds
+     */
+    @Setter
+    private long progressInterval = 30_000;
+    /**
+     * optional file to store the progress in, so that an interrupted run can be resumed
+     */
+    @Setter
+    private Path checkpointFile;
+    @Setter
+    private PropertyWriter propertyWriter = new PropertyManagerWriter();
+
+    @Getter
+    private BulkProgress progress;
+
+    private record Result(long position, Integer processId, PropertyChangeSet changes, Exception error) {
+    }
+
+    /**
+     * Generates the changed properties of one process
+     */
+    interface ProcessEvaluator {
+        PropertyChangeSet evaluate(Integer processId) throws Exception;
+    }
+
+    /**
+     * @param pluginTitle the title of the plugin, used to find the configuration
+     * @param stepTitle the step title the configuration is selected for
+     */
+    public BulkPropertyGenerator(String pluginTitle, String stepTitle) {
+        this.pluginTitle = pluginTitle;
+        this.stepTitle = stepTitle;
+        this.evaluator = this::evaluate;
+    }
+
+    BulkPropertyGenerator(ProcessEvaluator evaluator) {
+        this.pluginTitle = null;
+        this.stepTitle = null;
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Regenerate the properties of all given processes. If a checkpoint file is configured, the processes that were written successfully in a
+     * previous run are skipped.
+     *
+     * @param processIds the ids of the processes, in a stable order if the run should be resumable
+     * @return the final counters of this run
+     * @throws IOException if the checkpoint cannot be read or written
+     * @throws InterruptedException if the run was interrupted
+     * @throws IllegalStateException if the run was aborted because of an unexpected error of the writer
+     */
+    public BulkProgress run(Stream<Integer> processIds) throws IOException, InterruptedException {
+        progress = new BulkProgress();
+        BulkCheckpoint checkpoint = checkpointFile != null ? new BulkCheckpoint(checkpointFile) : null;
+        long resumePosition = checkpoint != null ? checkpoint.getPosition() : 0;
+        if (resumePosition > 0) {
+            log.info("Resuming bulk property generation after {} processes, {} failed ones are tried again", resumePosition,
+                    checkpoint.getFailed().size());
+        }
+
+        BlockingQueue<Result> results = new ArrayBlockingQueue<>(Math.max(batchSize, concurrency) * 2);
+        AtomicReference<Throwable> abort = new AtomicReference<>();
+        Thread writer = Thread.ofPlatform().name("generate-property-writer").start(() -> writeResults(results, checkpoint, abort));
+        Semaphore permits = new Semaphore(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Iterator<Integer> iterator = processIds.iterator();
+            long position = 0;
+            while (iterator.hasNext() && abort.get() == null) {
+                Integer processId = iterator.next();
+                long currentPosition = position++;
+                if (checkpoint != null && checkpoint.isFinished(currentPosition)) {
+                    continue;
+                }
+                permits.acquire();
+                executor.execute(() -> {
+                    try {
+                        Result result = generate(currentPosition, processId);
+                        // an aborted writer doesn't take results anymore
+                        while (abort.get() == null && !results.offer(result, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                            // wait for space in the queue
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            abort.compareAndSet(null, e);
+            throw e;
+        } finally {
+            // the writer drains the queue until it gets the end marker, so this never blocks for long
+            results.put(END_OF_INPUT);
+            writer.join();
+        }
+        if (checkpoint != null) {
+            checkpoint.save();
+        }
+        if (abort.get() != null) {
+            log.error("Bulk property generation aborted: {}", progress);
+            throw new IllegalStateException("Bulk property generation aborted: " + abort.get().getMessage(), abort.get());
+        }
+        log.info("Bulk property generation finished: {}", progress);
+        logSpecialReplacementErrors();
+        return progress;
+    }
+
+    private Result generate(long position, Integer processId) {
+        try {
+            return new Result(position, processId, evaluator.evaluate(processId), null);
+        } catch (Exception e) {
+            return new Result(position, processId, null, e);
+        }
+    }
+
+    private PropertyChangeSet evaluate(Integer processId) throws PluginException {
+        Process process = ProcessManager.getProcessById(processId);
+        if (process == null) {
+            throw new IllegalArgumentException("Process " + processId + " does not exist");
+        }
+        Step step = findStep(process);
+        PluginConfiguration configuration = PluginConfigurationCache.get(pluginTitle, step);
+        GenerationContext context = new GenerationContext(process, step);
+        try {
+            return PropertyGenerator.generate(context, configuration);
+        } finally {
+            progress.recordSpecialReplacementErrors(context.getSpecialReplacementErrors());
+        }
+    }
+
+    private Step findStep(Process process) {
+        for (Step step : process.getSchritte()) {
+            if (stepTitle.equals(step.getTitel())) {
+                return step;
+            }
+        }
+        // the process does not contain the step (anymore), use a detached one to select the configuration
+        Step step = new Step();
+        step.setTitel(stepTitle);
+        step.setProzess(process);
+        return step;
+    }
+
+    /**
+     * Write the results until the end marker arrives. The queue is drained until then in any case, otherwise evaluations waiting for space and
+     * the end marker itself would block forever. After an unexpected error or an interruption, the remaining results are only discarded.
+     */
+    private void writeResults(BlockingQueue<Result> results, BulkCheckpoint checkpoint, AtomicReference<Throwable> abort) {
+        long lastReport = System.currentTimeMillis();
+        List<Result> batch = new ArrayList<>(batchSize);
+        boolean finished = false;
+        boolean interrupted = false;
+        while (!finished) {
+            try {
+                batch.add(results.take());
+            } catch (InterruptedException e) {
+                interrupted = true;
+                abort.compareAndSet(null, e);
+                continue;
+            }
+            results.drainTo(batch, batchSize - 1);
+            for (Result result : batch) {
+                if (result == END_OF_INPUT) {
+                    finished = true;
+                } else if (abort.get() == null) {
+                    try {
+                        write(result, checkpoint);
+                    } catch (Throwable e) {
+                        log.error("Cannot write properties for process {}, aborting the bulk run: {}", result.processId(), e.getMessage(), e);
+                        abort.compareAndSet(null, e);
+                    }
+                }
+            }
+            batch.clear();
+            if (checkpoint != null) {
+                try {
+                    checkpoint.save();
+                } catch (IOException e) {
+                    log.error("Cannot write checkpoint file {}", checkpointFile, e);
+                }
+            }
+            if (System.currentTimeMillis() - lastReport >= progressInterval) {
+                lastReport = System.currentTimeMillis();
+                log.info("Bulk property generation: {}", progress);
+                logSpecialReplacementErrors();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void logSpecialReplacementErrors() {
+        String errors = progress.getSpecialReplacementErrorSummary(LOGGED_ERROR_PATHS);
+        if (!errors.isEmpty()) {
+            log.warn("Bulk property generation: failed special replacements: {}", errors);
+        }
+    }
+
+    private void write(Result result, BulkCheckpoint checkpoint) {
+        if (result.error() != null) {
+            log.error("Cannot generate properties for process {}: {}", result.processId(), result.error().getMessage(), result.error());
+            recordFailure(result, checkpoint);
+            return;
+        }
+        try {
+            propertyWriter.write(result.changes());
+        } catch (RuntimeException e) {
+            log.error("Cannot write properties for process {}: {}", result.processId(), e.getMessage(), e);
+            recordFailure(result, checkpoint);
+            return;
+        }
+        progress.recordSuccess(result.changes());
+        if (checkpoint != null) {
+            checkpoint.markFinished(result.position());
+        }
+    }
+
+    private void recordFailure(Result result, BulkCheckpoint checkpoint) {
+        progress.recordFailure();
+        if (checkpoint != null) {
+            checkpoint.markFailed(result.position());
+        }
+    }
+}
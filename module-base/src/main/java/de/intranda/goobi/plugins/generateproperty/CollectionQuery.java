@@ -0,0 +1,26 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.List;
+
+/**
+ * Resolves an indexed or filtered list property of a reflection path, like <code>schritte[0]</code> or <code>schritte[titel='Scan']</code>, with
+ * a targeted database query instead of loading the whole list.
+ */
+interface CollectionQuery {
+
+    /**
+     * returned if the query can't be used for a receiver, the path then loads the list through its getter
+     */
+    Object NOT_APPLICABLE = new Object();
+
+    /**
+     * Select one element of the list
+     *
+     * @param receiver the object that owns the list
+     * @param predicates the filters of the path segment, may be empty
+     * @param position the index among all elements that match the filters
+     * @return the selected element, null if there is no such element, or {@link #NOT_APPLICABLE}
+     * @throws Exception if the query failed
+     */
+    Object select(Object receiver, List<CompiledPath.Predicate> predicates, int position) throws Exception;
+}
@@ -0,0 +1,482 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * A reflection path like <code>schritte[0].bearbeitungsbenutzer.standort</code> that was parsed once into its segments.
+ *
+ * A list property can be followed by an index like <code>[0]</code>, by filters like <code>[titel='Scan']</code> or by both, e.g.
+ * <code>schritte[bearbeitungsstatus=3][1]</code> for the second step with the status 3. Filters compare the string value of a property of the
+ * elements. Some well-known lists like the steps of a process are resolved by a {@link CollectionQuery} that loads only the selected element.
+ *
+ * Every segment resolves its getter to a {@link MethodHandle} for the concrete class of the receiver. The last few receiver classes are kept in a
+ * small inline cache per segment, so polymorphic receivers like proxies or subclasses don't need a lookup on each evaluation. All other lookups go
+ * through a bounded cache shared by all paths. Getters that don't exist are cached as well.
+ *
+ * A path can also be {@link #bind(Class) bound} to a root type. Then every getter is resolved once against the declared return type of the
+ * previous segment, including the element type of a <code>List&lt;T&gt;</code>, and a misspelled property is rejected right away. The bound
+ * getters are called directly without any lookup.
+ */
+public final class CompiledPath {
+    private static final int INLINE_CACHE_SIZE = 4;
+    private static final int GETTER_CACHE_SIZE = 1024;
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final LruCache<GetterKey, MethodHandle> GETTER_CACHE = new LruCache<>(GETTER_CACHE_SIZE);
+    /**
+     * getters that don't exist, with the message of the exception, so a broken path doesn't reflect on every evaluation
+     */
+    private static final LruCache<GetterKey, String> MISSING_GETTERS = new LruCache<>(GETTER_CACHE_SIZE);
+    private static final Map<String, CollectionQuery> COLLECTION_QUERIES = Map.of("schritte", new StepQuery());
+
+    @Getter
+    private final String expression;
+    private final Segment[] segments;
+
+    private CompiledPath(String expression, Segment[] segments) {
+        this.expression = expression;
+        this.segments = segments;
+    }
+
+    /**
+     * Parse an expression into a reusable path
+     *
+     * @param expression the expression without the surrounding curly brackets
+     * @return the compiled path
+     * @throws IllegalArgumentException if the expression is syntactically invalid
+     */
+    public static CompiledPath compile(String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("Empty reflection path");
+        }
+        List<Segment> parsed = new ArrayList<>();
+        for (String part : splitSegments(expression)) {
+            parsed.add(parseSegment(expression, part));
+        }
+        return new CompiledPath(expression, parsed.toArray(new Segment[parsed.size()]));
+    }
+
+    /**
+     * Split the expression at every dot that is not part of a filter like <code>[titel='Scan 1.0']</code>
+     */
+    private static List<String> splitSegments(String expression) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        int depth = 0;
+        boolean quoted = false;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '\'' && depth > 0) {
+                quoted = !quoted;
+            } else if (!quoted && c == '[') {
+                depth++;
+            } else if (!quoted && c == ']') {
+                depth--;
+            } else if (!quoted && depth == 0 && c == '.') {
+                parts.add(expression.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (quoted || depth != 0) {
+            throw new IllegalArgumentException("Unbalanced brackets or quotes in reflection path " + expression);
+        }
+        parts.add(expression.substring(start));
+        return parts;
+    }
+
+    private static Segment parseSegment(String expression, String part) {
+        int bracket = part.indexOf('[');
+        String property = bracket < 0 ? part : part.substring(0, bracket);
+        if (property.isEmpty()) {
+            throw new IllegalArgumentException("Empty property name in reflection path " + expression);
+        }
+        int index = -1;
+        List<Predicate> predicates = new ArrayList<>();
+        while (bracket >= 0) {
+            int end = findClosingBracket(part, bracket);
+            if (end < 0 || index >= 0) {
+                throw new IllegalArgumentException("Invalid selector " + part + " in reflection path " + expression);
+            }
+            String selector = part.substring(bracket + 1, end).trim();
+            int equals = selector.indexOf('=');
+            if (equals < 0) {
+                index = Integer.parseInt(selector);
+            } else {
+                predicates.add(new Predicate(selector.substring(0, equals).trim(), parseLiteral(selector.substring(equals + 1).trim())));
+            }
+            bracket = end + 1 < part.length() ? end + 1 : -1;
+            if (bracket >= 0 && part.charAt(bracket) != '[') {
+                throw new IllegalArgumentException("Invalid selector " + part + " in reflection path " + expression);
+            }
+        }
+        return new Segment(property, index, predicates);
+    }
+
+    private static int findClosingBracket(String part, int open) {
+        boolean quoted = false;
+        for (int i = open + 1; i < part.length(); i++) {
+            char c = part.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && c == ']') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A literal is either quoted with single quotes, where two single quotes stand for one, or a plain word like a number
+     */
+    private static String parseLiteral(String literal) {
+        if (literal.length() >= 2 && literal.startsWith("'") && literal.endsWith("'")) {
+            return literal.substring(1, literal.length() - 1).replace("''", "'");
+        }
+        return literal;
+    }
+
+    /**
+     * Walk the path starting at the given object
+     *
+     * @param root the object to start with
+     * @return the value at the end of the path, or null if any intermediate value is null
+     * @throws NoSuchMethodException if a getter does not exist on the class of the current object
+     * @throws InvocationTargetException if a getter threw an exception
+     * @throws IllegalArgumentException if an indexed property is not a list
+     */
+    public Object evaluate(Object root) throws Exception {
+        Object current = root;
+        for (Segment segment : segments) {
+            current = segment.apply(current);
+            if (current == null) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Walk the path and return the string representation of its value
+     *
+     * @param root the object to start with
+     * @return the string value, or null if any value on the path is null
+     */
+    public String evaluateToString(Object root) throws Exception {
+        Object value = evaluate(root);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Resolve all getters against the declared types, starting at the given root type. Segments after a value whose declared type is
+     * <code>Object</code> or can't be determined, e.g. a raw list, stay unbound and are resolved against the class of the value at runtime.
+     *
+     * @param rootType the declared type of the object the path is evaluated on
+     * @return a new path with bound getters
+     * @throws IllegalArgumentException if a property does not exist on its declared type, or an index or filter is used on a property that is not
+     *             a List
+     */
+    public CompiledPath bind(Class<?> rootType) {
+        Segment[] bound = new Segment[segments.length];
+        Class<?> type = rootType;
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+            if (type == null || type == Object.class) {
+                bound[i] = segment;
+                continue;
+            }
+            Method getter = findGetter(type, segment.property, segment.getterName);
+            Type result = getter.getGenericReturnType();
+            if (segment.index < 0 && segment.predicates.isEmpty()) {
+                bound[i] = segment.bind(unreflectChecked(getter), segment.predicates);
+                type = rawType(result);
+                continue;
+            }
+            if (!List.class.isAssignableFrom(getter.getReturnType())) {
+                throw new IllegalArgumentException(
+                        "Property " + segment.property + " of " + type.getSimpleName() + " is not a List in reflection path " + expression);
+            }
+            type = rawType(elementType(result));
+            List<Predicate> predicates = new ArrayList<>(segment.predicates.size());
+            for (Predicate predicate : segment.predicates) {
+                if (type == null || type == Object.class) {
+                    predicates.add(predicate);
+                } else {
+                    predicates.add(predicate.bind(unreflectChecked(findGetter(type, predicate.property(), predicate.getterName()))));
+                }
+            }
+            bound[i] = segment.bind(unreflectChecked(getter), predicates);
+        }
+        return new CompiledPath(expression, bound);
+    }
+
+    private Method findGetter(Class<?> type, String property, String getterName) {
+        try {
+            return type.getMethod(getterName);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Unknown property " + property + " of " + type.getSimpleName() + " in reflection path " + expression,
+                    e);
+        }
+    }
+
+    private MethodHandle unreflectChecked(Method getter) {
+        try {
+            return unreflect(getter);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Getter " + getter.getName() + " is not accessible in reflection path " + expression, e);
+        }
+    }
+
+    /**
+     * @return the type argument of a <code>List&lt;T&gt;</code>, or null if it is unknown
+     */
+    private static Type elementType(Type listType) {
+        if (listType instanceof ParameterizedType parameterized && parameterized.getRawType() == List.class) {
+            return parameterized.getActualTypeArguments()[0];
+        }
+        return null;
+    }
+
+    /**
+     * @return the class of a declared type, the upper bound of type variables and wildcards, or null if it can't be determined
+     */
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class<?> cls) {
+            return cls.isPrimitive() ? null : cls;
+        }
+        if (type instanceof ParameterizedType parameterized) {
+            return rawType(parameterized.getRawType());
+        }
+        if (type instanceof WildcardType wildcard) {
+            return rawType(wildcard.getUpperBounds()[0]);
+        }
+        if (type instanceof TypeVariable<?> variable) {
+            return rawType(variable.getBounds()[0]);
+        }
+        return null;
+    }
+
+    private static MethodHandle resolveGetter(Class<?> type, String getterName) throws NoSuchMethodException {
+        GetterKey key = new GetterKey(type, getterName);
+        MethodHandle handle = GETTER_CACHE.get(key);
+        if (handle == null) {
+            String missing = MISSING_GETTERS.get(key);
+            if (missing != null) {
+                throw new NoSuchMethodException(missing);
+            }
+            try {
+                handle = unreflect(type.getMethod(getterName));
+            } catch (NoSuchMethodException e) {
+                MISSING_GETTERS.put(key, e.getMessage());
+                throw e;
+            } catch (IllegalAccessException e) {
+                NoSuchMethodException exception = new NoSuchMethodException(type.getName() + "." + getterName + " is not accessible");
+                exception.initCause(e);
+                MISSING_GETTERS.put(key, exception.getMessage());
+                throw exception;
+            }
+            GETTER_CACHE.put(key, handle);
+        }
+        return handle;
+    }
+
+    private static MethodHandle unreflect(Method method) throws IllegalAccessException {
+        try {
+            return LOOKUP.unreflect(method).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            // public method declared in a non public class, e.g. a generated proxy or List.of(...)
+            Method declaration = findPublicDeclaration(method.getDeclaringClass(), method.getName());
+            if (declaration != null) {
+                return LOOKUP.unreflect(declaration).asType(GETTER_TYPE);
+            }
+            try {
+                method.setAccessible(true);
+            } catch (InaccessibleObjectException | SecurityException inaccessible) {
+                // the class belongs to a package that its module doesn't open, e.g. an implementation class of the JDK
+                e.addSuppressed(inaccessible);
+                throw e;
+            }
+            return LOOKUP.unreflect(method).asType(GETTER_TYPE);
+        }
+    }
+
+    /**
+     * Search the superclasses and interfaces of a type for a declaration of a getter in a public class of an exported package
+     *
+     * @return the declaration, or null if there is none
+     */
+    private static Method findPublicDeclaration(Class<?> type, String getterName) {
+        for (Class<?> cls = type; cls != null; cls = cls.getSuperclass()) {
+            if (Modifier.isPublic(cls.getModifiers()) && cls.getModule().isExported(cls.getPackageName())) {
+                try {
+                    return cls.getMethod(getterName);
+                } catch (NoSuchMethodException e) {
+                    // not declared here, keep searching
+                }
+            }
+            for (Class<?> implemented : cls.getInterfaces()) {
+                Method declaration = findPublicDeclaration(implemented, getterName);
+                if (declaration != null) {
+                    return declaration;
+                }
+            }
+        }
+        return null;
+    }
+
+    private record GetterKey(Class<?> type, String getterName) {
+    }
+
+    private record InlineEntry(Class<?> type, MethodHandle handle) {
+    }
+
+    /**
+     * A filter like <code>titel='Scan'</code>, an element matches if the string value of its property equals the value
+     *
+     * @param property the property of the element
+     * @param value the expected value
+     * @param getterName the name of the getter of the property
+     * @param getter the getter bound to the declared element type, or null to resolve it for the class of each element
+     */
+    record Predicate(String property, String value, String getterName, MethodHandle getter) {
+
+        Predicate(String property, String value) {
+            this(property, value, "get" + Character.toUpperCase(property.charAt(0)) + property.substring(1), null);
+        }
+
+        /**
+         * @return the same filter with a getter that was resolved against the declared element type
+         */
+        Predicate bind(MethodHandle boundGetter) {
+            return new Predicate(property, value, getterName, boundGetter);
+        }
+
+        boolean matches(Object element) throws Exception {
+            if (element == null) {
+                return false;
+            }
+            Object actual;
+            try {
+                MethodHandle handle = getter != null ? getter : resolveGetter(element.getClass(), getterName());
+                actual = (Object) handle.invokeExact(element);
+            } catch (NoSuchMethodException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+            return actual != null && value.equals(actual.toString());
+        }
+    }
+
+    private static final class Segment {
+        private final String property;
+        private final String getterName;
+        private final int index;
+        private final List<Predicate> predicates;
+        private final CollectionQuery query;
+        /**
+         * getter resolved against the declared type of the receiver, or null if it is resolved for the class of each receiver
+         */
+        private final MethodHandle boundGetter;
+        private volatile InlineEntry[] inlineCache = new InlineEntry[0];
+
+        private Segment(String property, int index, List<Predicate> predicates) {
+            this(property, index, predicates, null);
+        }
+
+        private Segment(String property, int index, List<Predicate> predicates, MethodHandle boundGetter) {
+            this.property = property;
+            this.getterName = "get" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+            this.index = index;
+            this.predicates = List.copyOf(predicates);
+            this.query = index >= 0 || !predicates.isEmpty() ? COLLECTION_QUERIES.get(property) : null;
+            this.boundGetter = boundGetter;
+        }
+
+        private Segment bind(MethodHandle getter, List<Predicate> boundPredicates) {
+            return new Segment(property, index, boundPredicates, getter);
+        }
+
+        private Object apply(Object receiver) throws Exception {
+            if (query != null) {
+                Object selected = query.select(receiver, predicates, Math.max(index, 0));
+                if (selected != CollectionQuery.NOT_APPLICABLE) {
+                    if (selected == null && predicates.isEmpty()) {
+                        throw new IndexOutOfBoundsException("Index " + index + " out of bounds for property " + property);
+                    }
+                    return selected;
+                }
+            }
+            MethodHandle getter = boundGetter != null ? boundGetter : getterFor(receiver.getClass());
+            Object value;
+            try {
+                value = (Object) getter.invokeExact(receiver);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+            if (index < 0 && predicates.isEmpty()) {
+                return value;
+            }
+            if (!(value instanceof List<?> list)) {
+                throw new IllegalArgumentException("Property " + property + " is not a List");
+            }
+            if (predicates.isEmpty()) {
+                return list.get(index);
+            }
+            return select(list);
+        }
+
+        /**
+         * @return the element at the index among all elements matching the predicates, or null if there is none
+         */
+        private Object select(List<?> list) throws Exception {
+            int remaining = Math.max(index, 0);
+            for (Object element : list) {
+                if (matchesAll(element) && remaining-- == 0) {
+                    return element;
+                }
+            }
+            return null;
+        }
+
+        private boolean matchesAll(Object element) throws Exception {
+            for (Predicate predicate : predicates) {
+                if (!predicate.matches(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private MethodHandle getterFor(Class<?> type) throws NoSuchMethodException {
+            InlineEntry[] entries = inlineCache;
+            for (InlineEntry entry : entries) {
+                if (entry.type() == type) {
+                    return entry.handle();
+                }
+            }
+            MethodHandle handle = resolveGetter(type, getterName);
+            if (entries.length < INLINE_CACHE_SIZE) {
+                InlineEntry[] extended = Arrays.copyOf(entries, entries.length + 1);
+                extended[entries.length] = new InlineEntry(type, handle);
+                inlineCache = extended;
+            }
+            return handle;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.digester.plugins.PluginException;
+
+import ugh.dl.Fileformat;
+
+/**
+ * Cache of read metadata files, so that consecutive steps of the same process that run this plugin don't parse the same METS file again. The
+ * cache lives in the classloader of this plugin, other plugins and Goobi itself still read the METS file on their own.
+ *
+ * Entries are keyed by process id and store the modification time and size of meta.xml and meta_anchor.xml they were read from. An entry is
+ * only used if the files did not change since then. The cache is bounded by the estimated memory size of all entries and evicts the least
+ * recently used entries first. The cache is registered as MXBean under
+ * <code>de.intranda.goobi.plugins:type=GenerateProperty,name=FileformatCache</code>.
+ *
+ * The ugh object tree is neither immutable nor thread safe and is not copied. A cached instance is handed to every run of the same process, so
+ * readers must only read it. Steps of the same process that may run at the same time should not enable the cache.
+ */
+public class FileformatCache implements FileformatCacheMXBean {
+    /**
+     * rough factor between the size of a METS file and its parsed object tree
+     */
+    static final int BYTES_PER_FILE_BYTE = 8;
+
+    private static final FileformatCache INSTANCE = MBeans.register(new FileformatCache(),
+            "de.intranda.goobi.plugins:type=GenerateProperty,name=FileformatCache", "the metadata file cache");
+
+    private final Map<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder staleEntries = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long estimatedBytes;
+    private long maxBytes;
+
+    private record Entry(String stamp, long estimatedBytes, Fileformat fileformat) {
+    }
+
+    /**
+     * Loads a metadata file if it is not cached
+     */
+    @FunctionalInterface
+    public interface Loader {
+        Fileformat load() throws PluginException;
+    }
+
+    FileformatCache() {
+    }
+
+    public static FileformatCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the metadata file of a process from the cache, or load and cache it if it is missing or outdated
+     *
+     * @param processId the id of the process
+     * @param stamp the current modification time and size of the metadata files, see {@link ProcessMetadata#getMetadataFileStamp()}
+     * @param fileSize the size of the metadata files in bytes
+     * @param maxBytes the memory budget of the whole cache in bytes, taken over for all entries
+     * @param loader reads the metadata file
+     * @return the metadata file, possibly shared with other readers, so it must not be modified
+     * @throws PluginException if the metadata file cannot be read
+     */
+    public Fileformat get(Integer processId, String stamp, long fileSize, long maxBytes, Loader loader) throws PluginException {
+        synchronized (entries) {
+            this.maxBytes = maxBytes;
+            Entry entry = entries.get(processId);
+            if (entry != null) {
+                if (entry.stamp().equals(stamp)) {
+                    hits.increment();
+                    return entry.fileformat();
+                }
+                staleEntries.increment();
+                remove(processId);
+            }
+            misses.increment();
+        }
+        Fileformat fileformat = loader.load();
+        long size = fileSize * BYTES_PER_FILE_BYTE;
+        synchronized (entries) {
+            if (fileformat != null && size <= this.maxBytes) {
+                Entry previous = entries.put(processId, new Entry(stamp, size, fileformat));
+                if (previous != null) {
+                    estimatedBytes -= previous.estimatedBytes();
+                }
+                estimatedBytes += size;
+                evict();
+            }
+        }
+        return fileformat;
+    }
+
+    /**
+     * Remove the cached metadata file of a process, e.g. after it was changed
+     *
+     * @param processId the id of the process
+     */
+    public void invalidate(Integer processId) {
+        synchronized (entries) {
+            remove(processId);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            estimatedBytes = 0;
+        }
+    }
+
+    private void remove(Integer processId) {
+        Entry removed = entries.remove(processId);
+        if (removed != null) {
+            estimatedBytes -= removed.estimatedBytes();
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (estimatedBytes > maxBytes && iterator.hasNext()) {
+            estimatedBytes -= iterator.next().estimatedBytes();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public long getEstimatedBytes() {
+        synchronized (entries) {
+            return estimatedBytes;
+        }
+    }
+
+    @Override
+    public long getMaxBytes() {
+        synchronized (entries) {
+            return maxBytes;
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getStaleEntries() {
+        return staleEntries.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
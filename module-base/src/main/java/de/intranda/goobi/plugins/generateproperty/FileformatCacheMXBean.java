@@ -0,0 +1,21 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+/**
+ * JMX view of the {@link FileformatCache}.
+ */
+public interface FileformatCacheMXBean {
+
+    int getSize();
+
+    long getEstimatedBytes();
+
+    long getMaxBytes();
+
+    long getHits();
+
+    long getMisses();
+
+    long getStaleEntries();
+
+    long getEvictions();
+}
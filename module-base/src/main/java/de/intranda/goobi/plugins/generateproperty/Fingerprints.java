@@ -0,0 +1,47 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Incremental SHA-256 hashing of strings, used for configuration versions and input fingerprints.
+ */
+public class Fingerprints {
+    private static final int LENGTH = 16;
+
+    private final MessageDigest digest;
+
+    public Fingerprints() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Fingerprints add(String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+        } else {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            // separator, so that "ab" + "c" differs from "a" + "bc"
+            digest.update((byte) 1);
+        }
+        return this;
+    }
+
+    public Fingerprints add(long value) {
+        return add(Long.toString(value));
+    }
+
+    /**
+     * @return the first bytes of the hash as hexadecimal string
+     */
+    public String finish() {
+        byte[] hash = digest.digest();
+        return HexFormat.of().formatHex(hash, 0, LENGTH);
+    }
+}
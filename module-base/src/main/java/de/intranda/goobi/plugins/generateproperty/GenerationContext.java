@@ -0,0 +1,178 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+import org.apache.commons.digester.plugins.PluginException;
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Everything that belongs to a single step run of one process. Property definitions are shared between runs and get their process specific
+ * state only through this context.
+ *
+ * The context also memoizes every resolved <code>{{...}}</code> path and every value passed to the VariableReplacer, so a path or a value that
+ * is used by several definitions is resolved only once per run.
+ *
+ * The process is not thread safe and loads its associations lazily on first access. Definitions of one run may be evaluated on several
+ * threads, so every call that can touch the process, i.e. the path resolvers, the VariableReplacer and the metadata streaming, runs under
+ * one lock per run. Everything else, e.g. the regular expressions and lookup tables of a definition, still runs in parallel.
+ */
+@Getter
+public class GenerationContext {
+    private final Process process;
+    private final Step step;
+    private final ProcessMetadata metadata;
+    private final StepMetrics metrics;
+    /**
+     * accumulated nanoseconds per {@link Phase} of this run
+     */
+    private final long[] phaseNanos = new long[Phase.values().length];
+    /**
+     * failed <code>{{...}}</code> paths of this run, written to the journal at the end of the run
+     */
+    private final SpecialReplacementErrors specialReplacementErrors = new SpecialReplacementErrors();
+    @Getter(AccessLevel.NONE)
+    private final Map<String, String> specialValues = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<String, String> variableValues = new ConcurrentHashMap<>();
+    /**
+     * guards all access to the process, a lock instead of a monitor so that virtual threads loading an association don't pin their carrier
+     */
+    @Getter(AccessLevel.NONE)
+    private final Lock processLock = new ReentrantLock();
+
+    public GenerationContext(Process process, Step step) {
+        this(process, step, new ProcessMetadata(process, step));
+    }
+
+    public GenerationContext(Process process, Step step, ProcessMetadata metadata) {
+        this.process = process;
+        this.step = step;
+        this.metadata = metadata;
+        this.metrics = StepMetrics.forStep(step);
+        metadata.setMetrics(metrics);
+    }
+
+    /**
+     * Record the duration of a phase for this run and in the shared metrics
+     *
+     * @param phase the measured phase
+     * @param startNanos the value of {@link System#nanoTime()} at the start of the phase
+     */
+    public void record(Phase phase, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        synchronized (phaseNanos) {
+            phaseNanos[phase.ordinal()] += nanos;
+        }
+        metrics.record(phase, nanos);
+    }
+
+    /**
+     * @return a one line summary of the durations of this run
+     */
+    public String getTimingSummary() {
+        StringBuilder summary = new StringBuilder();
+        synchronized (phaseNanos) {
+            for (Phase phase : Phase.values()) {
+                long nanos = phase == Phase.METADATA_READ ? metadata.getReadNanos() : phaseNanos[phase.ordinal()];
+                if (summary.length() > 0) {
+                    summary.append(", ");
+                }
+                summary.append(phase.name().toLowerCase()).append('=').append(nanos / 1_000_000d).append("ms");
+            }
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Resolve a <code>{{...}}</code> path once per run
+     *
+     * @param expression the path
+     * @param resolver computes the value if the path wasn't resolved before in this run. If it returns null, the result is not memoized.
+     * @return the value of the path
+     */
+    public String resolveSpecial(String expression, UnaryOperator<String> resolver) {
+        String value = specialValues.get(expression);
+        if (value == null) {
+            processLock.lock();
+            try {
+                value = resolver.apply(expression);
+            } finally {
+                processLock.unlock();
+            }
+            if (value != null) {
+                specialValues.putIfAbsent(expression, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Replace the streamed metadata fields in a value, see {@link ProcessMetadata#replaceMetadataFields(String)}
+     *
+     * @param value the value with variables
+     * @return the value with the streamed fields replaced
+     * @throws PluginException if the metadata file cannot be read
+     */
+    public String replaceMetadataFields(String value) throws PluginException {
+        processLock.lock();
+        try {
+            return metadata.replaceMetadataFields(value);
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    /**
+     * Replace all variables in a value. The whole value is passed to the VariableReplacer, so nested and combined tokens are replaced exactly as
+     * without the context. Every distinct value is replaced only once per run.
+     *
+     * @param value the value with variables
+     * @return the value with all variables replaced
+     * @throws PluginException if the metadata file is needed but cannot be read
+     */
+    public String replaceVariables(String value) throws PluginException {
+        return replaceTokens(value, true);
+    }
+
+    /**
+     * Replace all variables in a value without reading the metadata file. Values with variables that need the metadata are replaced by the
+     * {@link ProcessMetadata#getPlainVariableReplacer() plain replacer} and are not memoized.
+     *
+     * @param value the value with variables
+     * @return the value with all variables replaced
+     */
+    public String replaceVariablesWithoutMetadata(String value) {
+        try {
+            return replaceTokens(value, false);
+        } catch (PluginException e) {
+            // can't happen, the metadata file is never read
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String replaceTokens(String value, boolean readMetadata) throws PluginException {
+        String replaced = variableValues.get(value);
+        if (replaced != null) {
+            return replaced;
+        }
+        processLock.lock();
+        try {
+            if (!readMetadata && ProcessMetadata.requiresMetadata(value)) {
+                return metadata.getPlainVariableReplacer().replace(value);
+            }
+            replaced = metadata.getVariableReplacer(value).replace(value);
+        } finally {
+            processLock.unlock();
+        }
+        variableValues.putIfAbsent(value, replaced);
+        return replaced;
+    }
+}
@@ -0,0 +1,111 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.digester.plugins.PluginException;
+
+/**
+ * Fingerprint of everything a step run depends on, used by the incremental mode.
+ *
+ * The fingerprint consists of two parts. The input part covers the configuration version, the modification time and size of meta.xml and
+ * meta_anchor.xml, and the values of all <code>{{...}}</code> paths and non-metadata variables, including those of <code>when</code> and
+ * <code>unless</code> conditions. The output part covers the stored values of all generated properties. If both parts are the same as in the
+ * last run, generating the properties would not change anything and the run can be skipped without reading the METS file.
+ *
+ * Aggregations over the structure tree are not evaluated here, they are covered by the modification time of the metadata file.
+ */
+public class InputFingerprint {
+
+    private InputFingerprint() {
+    }
+
+    /**
+     * Compute the input part of the fingerprint. This resolves <code>{{...}}</code> paths and cheap variables, but never reads the METS file.
+     *
+     * @param context the context of the current run
+     * @param configuration the configuration of the step
+     * @return the input fingerprint
+     * @throws PluginException if the metadata file cannot be accessed
+     */
+    public static String computeInputs(GenerationContext context, PluginConfiguration configuration) throws PluginException {
+        Fingerprints fingerprints = new Fingerprints().add(configuration.getVersion());
+        boolean metadata = false;
+        for (PropertyDefinition definition : configuration.getPropertyDefinitions()) {
+            metadata |= addTemplate(fingerprints, context, definition, definition.getTemplate());
+            for (PropertyGuard guard : definition.getGuards()) {
+                // the stored value used by exists and empty is part of the output fingerprint
+                if (guard.getOperand() != null) {
+                    metadata |= addTemplate(fingerprints, context, definition, guard.getOperand());
+                }
+            }
+        }
+        if (metadata) {
+            fingerprints.add(context.getMetadata().getMetadataFileStamp());
+        }
+        return fingerprints.finish();
+    }
+
+    /**
+     * Add the value of a template with resolved <code>{{...}}</code> paths and cheap variables
+     *
+     * @return true if the template depends on the METS file
+     */
+    private static boolean addTemplate(Fingerprints fingerprints, GenerationContext context, PropertyDefinition definition,
+            PropertyTemplate template) {
+        PropertyDefinition.CompiledExpressions expressions = definition.getCompiledExpressions(template);
+        AtomicBoolean aggregation = new AtomicBoolean();
+        PropertyTemplate.Rendered rendered = template.render((slot, expression) -> {
+            CompiledPath path;
+            try {
+                path = expressions.path(slot, expression);
+            } catch (IllegalArgumentException e) {
+                // an invalid path in a resolved value, the generation reports it
+                return "!error";
+            }
+            if (path == null) {
+                // an aggregation, covered by the stamp of the metadata file
+                aggregation.set(true);
+                return "@" + expression;
+            }
+            String resolved = context.resolveSpecial(expression, e -> resolve(context, path));
+            return resolved != null ? resolved : "!error";
+        });
+        String value = rendered.value();
+        boolean metadata = aggregation.get();
+        if (rendered.containsVariables()) {
+            metadata |= ProcessMetadata.requiresMetadata(value);
+            value = context.replaceVariablesWithoutMetadata(value);
+        }
+        fingerprints.add(value);
+        return metadata;
+    }
+
+    /**
+     * Compute the output part of the fingerprint from property values
+     *
+     * @param values the values of all generated properties, in configuration order
+     * @return the output fingerprint
+     */
+    public static String computeOutputs(Collection<String> values) {
+        Fingerprints fingerprints = new Fingerprints();
+        values.forEach(fingerprints::add);
+        return fingerprints.finish();
+    }
+
+    public static String combine(String inputs, String outputs) {
+        return inputs + "-" + outputs;
+    }
+
+    private static String resolve(GenerationContext context, CompiledPath path) {
+        try {
+            String resolved = path.evaluateToString(context.getProcess());
+            return resolved != null ? resolved : "null";
+        } catch (NullPointerException e) {
+            return "null";
+        } catch (Exception e) {
+            // the generation reports the error and must see it again, so the value is not memoized
+            return null;
+        }
+    }
+}
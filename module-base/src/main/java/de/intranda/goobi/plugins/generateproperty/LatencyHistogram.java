@@ -0,0 +1,64 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with power of two buckets. Recording a value does not allocate, so it can stay enabled permanently.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 1);
+        buckets.incrementAndGet(BUCKETS - 1 - Long.numberOfLeadingZeros(value));
+        count.increment();
+        totalNanos.add(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMillis() {
+        long n = getCount();
+        return n == 0 ? 0 : totalNanos.sum() / (double) n / 1_000_000d;
+    }
+
+    /**
+     * Estimate a percentile. The result is the upper bound of the bucket that contains the percentile, so it is at most twice the real value.
+     *
+     * @param percentile the percentile between 0 and 1
+     * @return the estimated latency in milliseconds
+     */
+    public double getPercentileMillis(double percentile) {
+        long n = getCount();
+        if (n == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(n * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= threshold) {
+                return Math.pow(2, i + 1) / 1_000_000d;
+            }
+        }
+        return Math.pow(2, BUCKETS) / 1_000_000d;
+    }
+
+    /**
+     * Remove all recorded values. Values recorded at the same time may be lost or counted only partially.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+    }
+}
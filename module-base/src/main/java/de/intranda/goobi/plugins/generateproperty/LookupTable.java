@@ -0,0 +1,250 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import lombok.Getter;
+
+/**
+ * A <code>map</code> element of a property: a table of literal substitutions that is applied in a single scan of the value.
+ *
+ * In <code>exact</code> mode, the whole value is looked up in a hash table. In <code>literal</code> mode, all keys are compiled into an
+ * Aho-Corasick automaton. The value is scanned once, and every occurrence of a key is replaced, choosing the leftmost and then the longest key if
+ * several keys overlap. Replaced text is never scanned again. The cost of applying the table depends on the length of the value, not on the number
+ * of entries.
+ */
+public class LookupTable implements ValueTransformation {
+
+    public enum Mode {
+        EXACT,
+        LITERAL
+    }
+
+    @Getter
+    private final Mode mode;
+    private final Map<String, String> entries;
+    private final String signature;
+
+    // automaton for the literal mode, one array entry per state, state 0 is the root
+    private char[][] transitionChars;
+    private int[][] transitionTargets;
+    private int[] failure;
+    private int[] depth;
+    private int[] outputLength;
+    private String[] outputValue;
+
+    /**
+     * @param mode exact or literal matching
+     * @param entries the keys and their replacements, later duplicates overwrite earlier ones
+     */
+    public LookupTable(Mode mode, Map<String, String> entries) {
+        this.mode = mode;
+        this.entries = new HashMap<>(entries);
+        this.entries.remove("");
+        Fingerprints fingerprints = new Fingerprints().add(mode.name());
+        new LinkedHashMap<>(entries).forEach((key, value) -> fingerprints.add(key).add(value));
+        this.signature = "map\u0000" + fingerprints.finish();
+        if (mode == Mode.LITERAL) {
+            buildAutomaton();
+        }
+    }
+
+    /**
+     * Read a table from a CSV or TSV file. Each line contains a key and its replacement, separated by the first occurrence of the separator.
+     * Empty lines and lines starting with <code>#</code> are ignored.
+     *
+     * @param file the file to read
+     * @param separator the separator, <code>\t</code> can be used for a tab
+     * @return the entries in file order
+     * @throws IOException if the file cannot be read
+     */
+    public static Map<String, String> readFile(Path file, String separator) throws IOException {
+        String actualSeparator = "\\t".equals(separator) ? "\t" : separator;
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            int index = line.indexOf(actualSeparator);
+            if (index < 0) {
+                throw new IOException("Missing separator in line '" + line + "' of " + file);
+            }
+            entries.put(line.substring(0, index), line.substring(index + actualSeparator.length()));
+        }
+        return entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String getSignature() {
+        return signature;
+    }
+
+    @Override
+    public String apply(String value) {
+        if (mode == Mode.EXACT) {
+            return entries.getOrDefault(value, value);
+        }
+        return replaceAll(value);
+    }
+
+    private String replaceAll(String value) {
+        int length = value.length();
+        StringBuilder result = null;
+        int copied = 0;
+        int state = 0;
+        int position = 0;
+        int pendingStart = -1;
+        int pendingLength = 0;
+        String pendingValue = null;
+        while (true) {
+            if (position < length) {
+                state = next(state, value.charAt(position));
+                int matchLength = outputLength[state];
+                if (matchLength > 0) {
+                    int start = position - matchLength + 1;
+                    if (pendingStart < 0 || start < pendingStart || start == pendingStart && matchLength > pendingLength) {
+                        pendingStart = start;
+                        pendingLength = matchLength;
+                        pendingValue = outputValue[state];
+                    }
+                }
+                position++;
+            }
+            boolean end = position >= length;
+            // no later match can start at or before the pending one, so it is final
+            if (pendingStart >= 0 && (end || position - depth[state] > pendingStart)) {
+                if (result == null) {
+                    result = new StringBuilder(length + 16);
+                }
+                result.append(value, copied, pendingStart).append(pendingValue);
+                copied = pendingStart + pendingLength;
+                position = copied;
+                state = 0;
+                pendingStart = -1;
+                continue;
+            }
+            if (end) {
+                break;
+            }
+        }
+        if (result == null) {
+            return value;
+        }
+        return result.append(value, copied, length).toString();
+    }
+
+    private int next(int state, char c) {
+        int current = state;
+        while (true) {
+            int target = transition(current, c);
+            if (target >= 0) {
+                return target;
+            }
+            if (current == 0) {
+                return 0;
+            }
+            current = failure[current];
+        }
+    }
+
+    private int transition(int state, char c) {
+        char[] chars = transitionChars[state];
+        int index = Arrays.binarySearch(chars, c);
+        return index >= 0 ? transitionTargets[state][index] : -1;
+    }
+
+    private void buildAutomaton() {
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        List<String> terminalValues = new ArrayList<>();
+        trie.add(new HashMap<>());
+        depths.add(0);
+        terminalValues.add(null);
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            int state = 0;
+            for (char c : entry.getKey().toCharArray()) {
+                Integer target = trie.get(state).get(c);
+                if (target == null) {
+                    target = trie.size();
+                    trie.add(new HashMap<>());
+                    depths.add(depths.get(state) + 1);
+                    terminalValues.add(null);
+                    trie.get(state).put(c, target);
+                }
+                state = target;
+            }
+            terminalValues.set(state, entry.getValue());
+        }
+
+        int states = trie.size();
+        transitionChars = new char[states][];
+        transitionTargets = new int[states][];
+        failure = new int[states];
+        depth = new int[states];
+        outputLength = new int[states];
+        outputValue = new String[states];
+        for (int state = 0; state < states; state++) {
+            Map<Character, Integer> children = trie.get(state);
+            char[] chars = new char[children.size()];
+            int i = 0;
+            for (Character c : children.keySet()) {
+                chars[i++] = c;
+            }
+            Arrays.sort(chars);
+            int[] targets = new int[chars.length];
+            for (i = 0; i < chars.length; i++) {
+                targets[i] = children.get(chars[i]);
+            }
+            transitionChars[state] = chars;
+            transitionTargets[state] = targets;
+            depth[state] = depths.get(state);
+        }
+
+        // breadth first: failure links and the longest key that ends in each state
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : transitionTargets[0]) {
+            failure[child] = 0;
+            queue.add(child);
+        }
+        setOutput(0, terminalValues);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            setOutput(state, terminalValues);
+            for (int i = 0; i < transitionChars[state].length; i++) {
+                char c = transitionChars[state][i];
+                int child = transitionTargets[state][i];
+                int fallback = failure[state];
+                while (fallback != 0 && transition(fallback, c) < 0) {
+                    fallback = failure[fallback];
+                }
+                int target = transition(fallback, c);
+                failure[child] = target >= 0 && target != child ? target : 0;
+                queue.add(child);
+            }
+        }
+    }
+
+    private void setOutput(int state, List<String> terminalValues) {
+        if (terminalValues.get(state) != null) {
+            outputLength[state] = depth[state];
+            outputValue[state] = terminalValues.get(state);
+        } else if (state != 0) {
+            outputLength[state] = outputLength[failure[state]];
+            outputValue[state] = outputValue[failure[state]];
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Registration of the MXBeans of this plugin in the platform MBean server
+ */
+@Log4j2
+final class MBeans {
+
+    private MBeans() {
+    }
+
+    /**
+     * Register a bean under the given name. A bean that is already registered under this name is replaced. It usually belongs to the classloader
+     * of a previous version of the plugin and would keep that classloader alive and hide the new bean.
+     *
+     * @param bean the MXBean
+     * @param name the object name
+     * @param description what the bean is, used in the log message if it cannot be registered
+     * @return the bean
+     */
+    static <T> T register(T bean, String name, String description) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(name);
+            synchronized (MBeans.class) {
+                if (server.isRegistered(objectName)) {
+                    try {
+                        server.unregisterMBean(objectName);
+                    } catch (InstanceNotFoundException e) {
+                        // unregistered concurrently by another classloader
+                    }
+                }
+                server.registerMBean(bean, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Cannot register {}: {}", description, e.getMessage());
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,271 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import lombok.Getter;
+
+/**
+ * Reads single metadata fields of the top structure element and its first child directly from a METS file, without building a
+ * {@link ugh.dl.DigitalDocument}.
+ *
+ * Only the requested fields of the logical <code>dmdSec</code>s are kept. Goobi writes the <code>dmdSec</code>s in the order of the logical
+ * structure, so <code>DMDLOG_0000</code> describes the top element and <code>DMDLOG_0001</code> its first child. If both contain all requested
+ * fields, reading stops right after them, before the <code>fileSec</code> and the structure maps. Otherwise the elements are taken from the
+ * logical <code>structMap</code> and reading stops as soon as the top element and its first child are known there, so only the physical
+ * structure and the structLink section are never parsed. The anchor file is only read if the top element is an anchor and one of its values
+ * is actually needed.
+ *
+ * The lookup rules are the same as in {@link de.sub.goobi.helper.VariableReplacer}: <code>{meta.topstruct.X}</code> uses the top element,
+ * <code>{meta.firstchild.X}</code> the first child, and <code>{meta.X}</code> the first child if it has a value, otherwise the top element.
+ */
+public class MetsFieldExtractor {
+    private static final String METS_NS = "http://www.loc.gov/METS/";
+    private static final String GOOBI_NS = "http://meta.goobi.org/v1.5.1/";
+    private static final String TOP_DMD = "DMDLOG_0000";
+    private static final String FIRST_CHILD_DMD = "DMDLOG_0001";
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    public enum Level {
+        ALL,
+        TOPSTRUCT,
+        FIRSTCHILD
+    }
+
+    private final Path metadataFile;
+    private final Set<String> fields;
+
+    private StructureValues main;
+    private Map<String, String> anchorValues;
+    /**
+     * bytes read from meta.xml and meta_anchor.xml so far
+     */
+    @Getter
+    private long bytesRead;
+
+    /**
+     * @param metadataFile the meta.xml of the process
+     * @param fields the names of all metadata fields that may be requested
+     */
+    public MetsFieldExtractor(Path metadataFile, Set<String> fields) {
+        this.metadataFile = metadataFile;
+        this.fields = Set.copyOf(fields);
+    }
+
+    /**
+     * Get the value of a metadata field
+     *
+     * @param level the structure element to look at
+     * @param field the metadata name
+     * @return the value, or an empty string if the field does not exist on that level
+     * @throws IOException if the METS file cannot be read
+     */
+    public String getValue(Level level, String field) throws IOException {
+        StructureValues values = getMain();
+        String first = values.firstChild() != null ? values.firstChild().get(field) : null;
+        return switch (level) {
+            case FIRSTCHILD -> first != null ? first : "";
+            case TOPSTRUCT -> valueOrEmpty(getTopValues(values).get(field));
+            case ALL -> first != null ? first : valueOrEmpty(getTopValues(values).get(field));
+        };
+    }
+
+    private static String valueOrEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private StructureValues getMain() throws IOException {
+        if (main == null) {
+            main = read(metadataFile);
+        }
+        return main;
+    }
+
+    private Map<String, String> getTopValues(StructureValues values) throws IOException {
+        if (!values.anchored()) {
+            return values.top();
+        }
+        if (anchorValues == null) {
+            Path anchorFile = metadataFile.resolveSibling("meta_anchor.xml");
+            anchorValues = Files.exists(anchorFile) ? read(anchorFile).top() : Map.of();
+        }
+        return anchorValues;
+    }
+
+    private record StructureValues(Map<String, String> top, Map<String, String> firstChild, boolean anchored) {
+    }
+
+    private StructureValues read(Path file) throws IOException {
+        CountingInputStream in = new CountingInputStream(Files.newInputStream(file));
+        try (in) {
+            XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+            try {
+                return read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot parse METS file " + file, e);
+        } finally {
+            // parsing stops after the first dmdSecs or the logical structMap, so usually only a part of the file is read
+            bytesRead += in.count;
+        }
+    }
+
+    /**
+     * Counts the bytes the parser actually consumed from the file
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    private StructureValues read(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, Map<String, String>> dmdValues = new HashMap<>();
+        String currentDmd = null;
+        boolean logicalMap = false;
+        int divDepth = 0;
+        String topDmd = null;
+        String firstChildDmd = null;
+        boolean anchored = false;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String namespace = reader.getNamespaceURI();
+                String name = reader.getLocalName();
+                if (METS_NS.equals(namespace)) {
+                    if ("dmdSec".equals(name)) {
+                        currentDmd = reader.getAttributeValue(null, "ID");
+                        if (currentDmd != null) {
+                            dmdValues.computeIfAbsent(currentDmd, id -> new HashMap<>());
+                        }
+                    } else if ("structMap".equals(name)) {
+                        logicalMap = "LOGICAL".equals(reader.getAttributeValue(null, "TYPE"));
+                    } else if (logicalMap && "div".equals(name)) {
+                        divDepth++;
+                        if (divDepth == 1) {
+                            topDmd = reader.getAttributeValue(null, "DMDID");
+                        } else if (divDepth == 2) {
+                            firstChildDmd = reader.getAttributeValue(null, "DMDID");
+                            break;
+                        }
+                    } else if (logicalMap && "mptr".equals(name) && divDepth == 1) {
+                        anchored = true;
+                    }
+                } else if (GOOBI_NS.equals(namespace) && "metadata".equals(name) && currentDmd != null) {
+                    readMetadata(reader, dmdValues.computeIfAbsent(currentDmd, id -> new HashMap<>()));
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && METS_NS.equals(reader.getNamespaceURI())) {
+                String name = reader.getLocalName();
+                if ("dmdSec".equals(name)) {
+                    if (FIRST_CHILD_DMD.equals(currentDmd)) {
+                        StructureValues values = fromConvention(dmdValues);
+                        if (values != null) {
+                            return values;
+                        }
+                    }
+                    currentDmd = null;
+                } else if (logicalMap && "div".equals(name)) {
+                    if (--divDepth == 0) {
+                        // top element without children
+                        break;
+                    }
+                } else if ("structMap".equals(name) && logicalMap) {
+                    break;
+                }
+            }
+        }
+        Map<String, String> top = topDmd != null ? dmdValues.getOrDefault(topDmd, Map.of()) : Map.of();
+        Map<String, String> firstChild = firstChildDmd != null ? dmdValues.getOrDefault(firstChildDmd, Map.of()) : null;
+        return new StructureValues(top, firstChild, anchored);
+    }
+
+    /**
+     * Take the top element and its first child from the conventional <code>dmdSec</code> IDs, if all requested fields are already known. Without
+     * <code>DMDLOG_0000</code> the top element is an anchor that is described in the anchor file.
+     *
+     * @return the values, or null if the logical structMap is needed
+     */
+    private StructureValues fromConvention(Map<String, Map<String, String>> dmdValues) {
+        Map<String, String> firstChild = dmdValues.get(FIRST_CHILD_DMD);
+        if (!firstChild.keySet().containsAll(fields)) {
+            return null;
+        }
+        Map<String, String> top = dmdValues.get(TOP_DMD);
+        if (top == null) {
+            return new StructureValues(Map.of(), firstChild, true);
+        }
+        return top.keySet().containsAll(fields) ? new StructureValues(top, firstChild, false) : null;
+    }
+
+    private void readMetadata(XMLStreamReader reader, Map<String, String> values) throws XMLStreamException {
+        String field = reader.getAttributeValue(null, "name");
+        // persons, corporates and groups are not plain metadata, the anchor identifier belongs to the parent element
+        boolean plain = reader.getAttributeValue(null, "type") == null && !"true".equals(reader.getAttributeValue(null, "anchorId"));
+        if (plain && fields.contains(field) && !values.containsKey(field)) {
+            values.put(field, reader.getElementText());
+        } else {
+            skipElement(reader);
+        }
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
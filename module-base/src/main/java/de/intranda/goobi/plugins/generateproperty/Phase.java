@@ -0,0 +1,13 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+/**
+ * The measured phases of a step run.
+ */
+public enum Phase {
+    METADATA_READ,
+    SPECIAL_REPLACEMENT,
+    VARIABLE_REPLACEMENT,
+    REGEX_REPLACEMENT,
+    PERSISTENCE,
+    TOTAL
+}
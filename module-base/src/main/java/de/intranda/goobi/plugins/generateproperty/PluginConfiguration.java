@@ -0,0 +1,244 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.SubnodeConfiguration;
+import org.apache.commons.configuration.tree.ConfigurationNode;
+import org.apache.commons.digester.plugins.PluginException;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The fully parsed and compiled configuration block of one project and step. Instances are immutable and shared between step runs through the
+ * {@link PluginConfigurationCache}.
+ */
+@Getter
+public class PluginConfiguration {
+    public static final String DEFAULT_FINGERPRINT_PROPERTY = "GeneratePropertyFingerprint";
+
+    private final List<PropertyDefinition> propertyDefinitions;
+    /**
+     * hash over all property definitions, changes whenever a definition changes
+     */
+    private final String version;
+    /**
+     * skip the whole run if the inputs of all definitions are unchanged since the last run
+     */
+    private final boolean incremental;
+    private final String fingerprintProperty;
+    /**
+     * read referenced metadata fields directly from the METS file instead of loading the digital document
+     */
+    private final boolean streamingMetadata;
+    /**
+     * memory budget of the server wide cache of read metadata files in megabytes, 0 to disable the cache
+     */
+    private final long metadataCacheSize;
+    /**
+     * names of all metadata fields referenced by <code>{meta.X}</code> tokens of the definitions
+     */
+    private final Set<String> metadataFields;
+    /**
+     * how to handle existing properties with the same name
+     */
+    private final PropertyChangeSet.DuplicatePolicy duplicatePolicy;
+    /**
+     * maximum number of definitions that are evaluated at the same time for one process, 1 to evaluate them one after another
+     */
+    private final int parallelDefinitions;
+    /**
+     * generate the properties in the background and close the step afterwards
+     */
+    private final boolean async;
+    /**
+     * maximum number of asynchronous runs at the same time on this server
+     */
+    private final int asyncConcurrency;
+    /**
+     * maximum number of asynchronous runs waiting for a free slot
+     */
+    private final int asyncQueueSize;
+    /**
+     * write the changes through the server wide {@link WriteBehindQueue} instead of one transaction per property and run
+     */
+    private final boolean writeBehind;
+    /**
+     * wait for the write-behind queue to store the changes before the step is closed, or not
+     */
+    private final WriteBehindPropertyWriter.Durability writeBehindDurability;
+    /**
+     * maximum number of properties waiting in the write-behind queue
+     */
+    private final int writeBehindQueueSize;
+    /**
+     * number of waiting properties that triggers a flush of the write-behind queue
+     */
+    private final int writeBehindBatchSize;
+    /**
+     * maximum time in milliseconds a property waits in the write-behind queue
+     */
+    private final long writeBehindInterval;
+
+    /**
+     * external files like lookup tables with their modification time
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<Path, Long> dependencies;
+
+    /**
+     * engine and time budget for <code>replace</code> elements without own attributes
+     */
+    private record RegexDefaults(String engine, long timeout) {
+    }
+
+    private PluginConfiguration(List<PropertyDefinition> propertyDefinitions, SubnodeConfiguration config, Map<Path, Long> dependencies) {
+        this.propertyDefinitions = List.copyOf(propertyDefinitions);
+        this.dependencies = Map.copyOf(dependencies);
+        Fingerprints fingerprints = new Fingerprints();
+        Set<String> fields = new HashSet<>();
+        for (PropertyDefinition definition : propertyDefinitions) {
+            fingerprints.add(definition.getSignature());
+            fields.addAll(ProcessMetadata.getReferencedFields(definition.getRawString()));
+            for (PropertyGuard guard : definition.getGuards()) {
+                if (guard.getOperand() != null) {
+                    fields.addAll(ProcessMetadata.getReferencedFields(guard.getOperand().getRawString()));
+                }
+            }
+        }
+        this.metadataFields = Set.copyOf(fields);
+        this.version = fingerprints.finish();
+        this.incremental = config.getBoolean("incremental", false);
+        this.fingerprintProperty = config.getString("fingerprintProperty", DEFAULT_FINGERPRINT_PROPERTY);
+        this.streamingMetadata = config.getBoolean("streamingMetadata", false);
+        this.metadataCacheSize = config.getLong("metadataCacheSize", 0);
+        this.duplicatePolicy = PropertyChangeSet.DuplicatePolicy.valueOf(config.getString("duplicateProperties", "first").toUpperCase());
+        this.parallelDefinitions = config.getInt("parallelDefinitions", 1);
+        this.async = config.getBoolean("async", false);
+        this.asyncConcurrency = config.getInt("asyncConcurrency", 4);
+        this.asyncQueueSize = config.getInt("asyncQueueSize", 100);
+        this.writeBehind = config.getBoolean("writeBehind", false);
+        this.writeBehindDurability = WriteBehindPropertyWriter.Durability.valueOf(config.getString("writeBehindDurability", "close").toUpperCase());
+        this.writeBehindQueueSize = config.getInt("writeBehindQueueSize", 1000);
+        this.writeBehindBatchSize = config.getInt("writeBehindBatchSize", 100);
+        this.writeBehindInterval = config.getLong("writeBehindInterval", 200);
+    }
+
+    public static PluginConfiguration parse(SubnodeConfiguration config) throws PluginException {
+        try {
+            Map<Path, Long> dependencies = new HashMap<>();
+            RegexDefaults regexDefaults = new RegexDefaults(config.getString("regexEngine", "java"),
+                    config.getLong("regexTimeout", PropertyReplacement.DEFAULT_TIMEOUT));
+            List<PropertyDefinition> definitions = new ArrayList<>();
+            for (HierarchicalConfiguration propertyConfig : config.configurationsAt("property")) {
+                definitions.add(parsePropertyDefinition(propertyConfig, dependencies, regexDefaults));
+            }
+            return new PluginConfiguration(definitions, config, dependencies);
+        } catch (IllegalArgumentException e) {
+            throw new PluginException("Error during property definition parsing: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Check if one of the external files that were read together with the configuration, e.g. lookup tables, changed since then
+     *
+     * @return true if the configuration has to be parsed again
+     */
+    public boolean isOutdated() {
+        for (Map.Entry<Path, Long> dependency : dependencies.entrySet()) {
+            if (lastModified(dependency.getKey()) != dependency.getValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static PropertyDefinition parsePropertyDefinition(HierarchicalConfiguration config, Map<Path, Long> dependencies,
+            RegexDefaults regexDefaults) throws IllegalArgumentException {
+        String name = config.getString("@name");
+        String value = config.getString("@value");
+        List<ValueTransformation> replacements = parseReplacements(config, dependencies, regexDefaults);
+        return new PropertyDefinition(name, value, replacements, config.getString("@when", null), config.getString("@unless", null));
+    }
+
+    /**
+     * Parse all <code>replace</code> and <code>map</code> elements of a property in document order
+     */
+    private static @NonNull List<ValueTransformation> parseReplacements(HierarchicalConfiguration config, Map<Path, Long> dependencies,
+            RegexDefaults regexDefaults) {
+        List<ValueTransformation> replacements = new ArrayList<>();
+        for (ConfigurationNode child : config.getRootNode().getChildren()) {
+            if ("replace".equals(child.getName())) {
+                replacements.add(parseReplacement(child, regexDefaults));
+            } else if ("map".equals(child.getName())) {
+                replacements.add(parseLookupTable(child, dependencies));
+            }
+        }
+        return replacements;
+    }
+
+    private static PropertyReplacement parseReplacement(ConfigurationNode node, RegexDefaults regexDefaults) {
+        String regex = getAttribute(node, "regex", "");
+        String engine = getAttribute(node, "engine", regexDefaults.engine());
+        String timeout = getAttribute(node, "timeout", null);
+        try {
+            return new PropertyReplacement(regex, getAttribute(node, "replacement", ""), PropertyReplacement.Engine.valueOf(engine.toUpperCase()),
+                    timeout != null ? Long.parseLong(timeout) : regexDefaults.timeout());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid replace element with regex '" + regex + "': " + e.getMessage(), e);
+        }
+    }
+
+    private static LookupTable parseLookupTable(ConfigurationNode node, Map<Path, Long> dependencies) {
+        LookupTable.Mode mode = LookupTable.Mode.valueOf(getAttribute(node, "mode", "literal").toUpperCase());
+        Map<String, String> entries = new LinkedHashMap<>();
+        String file = getAttribute(node, "file", null);
+        if (file != null) {
+            Path path = Paths.get(file);
+            if (!path.isAbsolute()) {
+                path = Paths.get(ConfigurationHelper.getInstance().getConfigurationFolder()).resolve(path);
+            }
+            String defaultSeparator = file.toLowerCase().endsWith(".tsv") ? "\t" : ",";
+            String separator = getAttribute(node, "separator", defaultSeparator);
+            try {
+                entries.putAll(LookupTable.readFile(path, separator));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot read lookup table " + path, e);
+            }
+            dependencies.put(path, lastModified(path));
+        }
+        for (ConfigurationNode entry : node.getChildren("entry")) {
+            entries.put(getAttribute(entry, "key", ""), getAttribute(entry, "value", ""));
+        }
+        return new LookupTable(mode, entries);
+    }
+
+    private static String getAttribute(ConfigurationNode node, String name, String defaultValue) {
+        List<ConfigurationNode> attributes = node.getAttributes(name);
+        if (attributes.isEmpty() || attributes.get(0).getValue() == null) {
+            return defaultValue;
+        }
+        return attributes.get(0).getValue().toString();
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
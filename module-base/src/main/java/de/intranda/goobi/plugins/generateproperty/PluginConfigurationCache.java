@@ -0,0 +1,85 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.configuration.SubnodeConfiguration;
+import org.apache.commons.digester.plugins.PluginException;
+import org.goobi.beans.Step;
+
+import de.sub.goobi.config.ConfigPlugins;
+import de.sub.goobi.config.ConfigurationHelper;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Process wide cache of compiled plugin configurations.
+ *
+ * Entries are keyed by project, step title and the path and modification time of the configuration file. As soon as the file changes, all
+ * entries of the old version are dropped and the next step run parses the configuration again. The same happens if an external file that was
+ * read together with the configuration, e.g. a lookup table, changed. If the configuration file cannot be found on disk, nothing is cached.
+ */
+@Log4j2
+public class PluginConfigurationCache {
+    private static final Map<Key, PluginConfiguration> CACHE = new ConcurrentHashMap<>();
+
+    private record Key(String project, String step, Path configFile, long lastModified) {
+    }
+
+    private PluginConfigurationCache() {
+    }
+
+    /**
+     * Get the compiled configuration for the given plugin and step, parsing it only if the configuration file changed since the last call
+     *
+     * @param pluginTitle the title of the plugin, used to find the configuration file
+     * @param step the step that is executed
+     * @return the compiled configuration
+     * @throws PluginException if the configuration cannot be parsed
+     */
+    public static PluginConfiguration get(String pluginTitle, Step step) throws PluginException {
+        Path configFile = Paths.get(ConfigurationHelper.getInstance().getConfigurationFolder(), "plugin_" + pluginTitle + ".xml");
+        long lastModified = getLastModified(configFile);
+        if (lastModified < 0) {
+            return load(pluginTitle, step);
+        }
+        String project = step.getProzess().getProjekt() != null ? step.getProzess().getProjekt().getTitel() : null;
+        Key key = new Key(project, step.getTitel(), configFile, lastModified);
+        PluginConfiguration configuration = CACHE.get(key);
+        if (configuration != null && configuration.isOutdated()) {
+            log.debug("Lookup tables of {} changed, parsing the configuration again", configFile);
+            CACHE.remove(key);
+            configuration = null;
+        }
+        if (configuration == null) {
+            CACHE.keySet().removeIf(k -> k.configFile().equals(configFile) && k.lastModified() != lastModified);
+            configuration = load(pluginTitle, step);
+            CACHE.put(key, configuration);
+            log.debug("Cached configuration of {} for project '{}' and step '{}'", configFile, project, step.getTitel());
+        }
+        return configuration;
+    }
+
+    /**
+     * Remove all cached configurations
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    private static PluginConfiguration load(String pluginTitle, Step step) throws PluginException {
+        SubnodeConfiguration config = ConfigPlugins.getProjectAndStepConfig(pluginTitle, step);
+        return PluginConfiguration.parse(config);
+    }
+
+    private static long getLastModified(Path configFile) {
+        try {
+            return Files.getLastModifiedTime(configFile).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
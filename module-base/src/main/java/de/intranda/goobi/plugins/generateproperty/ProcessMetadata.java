@@ -0,0 +1,347 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.digester.plugins.PluginException;
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+
+import de.sub.goobi.helper.VariableReplacer;
+import de.sub.goobi.helper.exceptions.SwapException;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
+import ugh.dl.DigitalDocument;
+import ugh.dl.Fileformat;
+import ugh.dl.Prefs;
+import ugh.exceptions.PreferencesException;
+import ugh.exceptions.ReadException;
+import ugh.fileformats.mets.MetsMods;
+
+/**
+ * Shared, lazily loaded access to the METS file of a process for the duration of one step run.
+ *
+ * The meta.xml is read at most once and only when a value actually contains a metadata token like <code>{meta.CatalogIDDigital}</code> or
+ * <code>{metas.Author}</code>. Values without such tokens are resolved by a {@link VariableReplacer} that has no digital document attached.
+ */
+@Log4j2
+public class ProcessMetadata {
+    private static final Pattern METADATA_TOKEN = Pattern.compile("[{(]metas?\\.");
+    private static final Pattern FIELD_TOKEN = Pattern.compile("\\$?\\{meta\\.(?:(topstruct|firstchild)\\.)?([\\w-]+)\\}");
+
+    private final Process process;
+    private final Step step;
+    private final Prefs prefs;
+    /**
+     * the metadata file outside of the Goobi storage, only set for offline tools
+     */
+    private final Path metadataFile;
+
+    @Getter
+    private boolean loaded;
+    @Getter
+    private long readNanos;
+    @Setter
+    private StepMetrics metrics;
+    private Fileformat fileformat;
+    private VariableReplacer metadataReplacer;
+    private VariableReplacer plainReplacer;
+    private Set<String> streamingFields;
+    private MetsFieldExtractor fieldExtractor;
+    private long streamedBytesRecorded;
+    private long cacheBytes;
+
+    public ProcessMetadata(Process process, Step step) {
+        this.process = process;
+        this.step = step;
+        this.prefs = null;
+        this.metadataFile = null;
+    }
+
+    private ProcessMetadata(Process process, Step step, Fileformat fileformat, Prefs prefs, Path metadataFile) {
+        this.process = process;
+        this.step = step;
+        this.prefs = prefs;
+        this.metadataFile = metadataFile;
+        this.fileformat = fileformat;
+        this.loaded = fileformat != null;
+    }
+
+    /**
+     * Create an instance for an already loaded metadata file, e.g. for offline tools and benchmarks that don't have access to the Goobi storage
+     *
+     * @param process the process
+     * @param step the current step
+     * @param fileformat the loaded metadata file
+     * @param prefs the ruleset of the metadata file
+     * @return the metadata handle
+     */
+    public static ProcessMetadata preloaded(Process process, Step step, Fileformat fileformat, Prefs prefs) {
+        return new ProcessMetadata(process, step, fileformat, prefs, null);
+    }
+
+    /**
+     * Create an instance that reads a metadata file outside of the Goobi storage, e.g. for offline tools that replay exported processes. The
+     * file is read lazily and streamed like in a normal step run.
+     *
+     * @param process the process
+     * @param step the current step
+     * @param metadataFile the meta.xml file, a meta_anchor.xml next to it is read as well
+     * @param prefs the ruleset of the metadata file
+     * @return the metadata handle
+     */
+    public static ProcessMetadata offline(Process process, Step step, Path metadataFile, Prefs prefs) {
+        return new ProcessMetadata(process, step, null, prefs, metadataFile);
+    }
+
+    /**
+     * Check if resolving the given value needs the METS file of the process
+     *
+     * @param value the value to check
+     * @return true if the value contains at least one metadata token
+     */
+    public static boolean requiresMetadata(String value) {
+        return value != null && METADATA_TOKEN.matcher(value).find();
+    }
+
+    /**
+     * Collect the names of all metadata fields that are referenced by simple tokens like <code>{meta.CatalogIDDigital}</code>
+     *
+     * @param text the text to search
+     * @return the referenced field names
+     */
+    public static Set<String> getReferencedFields(String text) {
+        Set<String> fields = new HashSet<>();
+        Matcher matcher = FIELD_TOKEN.matcher(text);
+        while (matcher.find()) {
+            fields.add(matcher.group(2));
+        }
+        return fields;
+    }
+
+    /**
+     * Resolve simple metadata tokens by streaming the METS file instead of building the digital document
+     *
+     * @param fields all fields that may be requested during this run
+     */
+    public synchronized void enableStreaming(Set<String> fields) {
+        this.streamingFields = Set.copyOf(fields);
+    }
+
+    /**
+     * Read the METS file through the {@link FileformatCache}, so that it is parsed only once for consecutive steps of the process. The digital
+     * document is then shared with other runs of the same process and must not be modified.
+     *
+     * @param maxBytes the memory budget of the cache in bytes
+     */
+    public synchronized void enableCache(long maxBytes) {
+        this.cacheBytes = maxBytes;
+    }
+
+    /**
+     * Replace the metadata tokens of a value with the values read by the {@link MetsFieldExtractor}. This is only done if streaming is enabled
+     * and all metadata tokens of the value are simple field tokens. Otherwise the value is returned unchanged and the metadata tokens are left to
+     * the VariableReplacer.
+     *
+     * @param value the value to replace
+     * @return the value with replaced metadata tokens
+     * @throws PluginException if the METS file cannot be read
+     */
+    public synchronized String replaceMetadataFields(String value) throws PluginException {
+        if (streamingFields == null || metadataReplacer != null || !requiresMetadata(value)) {
+            return value;
+        }
+        int tokens = 0;
+        Matcher any = METADATA_TOKEN.matcher(value);
+        while (any.find()) {
+            tokens++;
+        }
+        Matcher matcher = FIELD_TOKEN.matcher(value);
+        StringBuilder result = new StringBuilder(value.length());
+        int position = 0;
+        int simpleTokens = 0;
+        long start = System.nanoTime();
+        try {
+            while (matcher.find()) {
+                String field = matcher.group(2);
+                if (!streamingFields.contains(field)) {
+                    return value;
+                }
+                MetsFieldExtractor.Level level = matcher.group(1) == null ? MetsFieldExtractor.Level.ALL
+                        : MetsFieldExtractor.Level.valueOf(matcher.group(1).toUpperCase());
+                result.append(value, position, matcher.start()).append(getFieldExtractor().getValue(level, field));
+                position = matcher.end();
+                simpleTokens++;
+            }
+        } catch (IOException e) {
+            throw new PluginException("Errors happened while trying to read the metadata file of process " + process.getId(), e);
+        }
+        if (simpleTokens != tokens) {
+            return value;
+        }
+        long nanos = System.nanoTime() - start;
+        readNanos += nanos;
+        if (metrics != null && fieldExtractor.getBytesRead() > streamedBytesRecorded) {
+            metrics.record(Phase.METADATA_READ, nanos);
+            metrics.addMetadataBytesRead(fieldExtractor.getBytesRead() - streamedBytesRecorded);
+            streamedBytesRecorded = fieldExtractor.getBytesRead();
+        }
+        return result.append(value, position, value.length()).toString();
+    }
+
+    private MetsFieldExtractor getFieldExtractor() throws PluginException {
+        if (fieldExtractor == null) {
+            try {
+                fieldExtractor = new MetsFieldExtractor(metadataFilePath(), streamingFields);
+            } catch (Exception e) {
+                throw new PluginException("Cannot determine the metadata file of process " + process.getId(), e);
+            }
+        }
+        return fieldExtractor;
+    }
+
+    public synchronized Fileformat getFileformat() throws PluginException {
+        if (!loaded) {
+            if (cacheBytes > 0 && process.getId() != null) {
+                long fileSize = getMetadataFileSize() + getAnchorFileSize();
+                fileformat = FileformatCache.getInstance().get(process.getId(), getMetadataFileStamp(), fileSize, cacheBytes, this::readMetadataFile);
+            } else {
+                fileformat = readMetadataFile();
+            }
+            loaded = true;
+        }
+        return fileformat;
+    }
+
+    private Fileformat readMetadataFile() throws PluginException {
+        long start = System.nanoTime();
+        try {
+            log.debug("Reading metadata file of process {}", process.getId());
+            Fileformat result;
+            if (metadataFile != null) {
+                result = new MetsMods(prefs);
+                result.read(metadataFile.toString());
+            } else {
+                result = process.readMetadataFile();
+            }
+            readNanos = System.nanoTime() - start;
+            if (metrics != null) {
+                metrics.record(Phase.METADATA_READ, readNanos);
+                metrics.addMetadataBytesRead(getMetadataFileSize());
+            }
+            return result;
+        } catch (ReadException | IOException | SwapException | PreferencesException e) {
+            throw new PluginException("Errors happened while trying to read the metadata file of process " + process.getId(), e);
+        }
+    }
+
+    private Path metadataFilePath() throws Exception {
+        return metadataFile != null ? metadataFile : Paths.get(process.getMetadataFilePath());
+    }
+
+    private long getAnchorFileSize() {
+        try {
+            Path anchorFile = metadataFilePath().resolveSibling("meta_anchor.xml");
+            return Files.exists(anchorFile) ? Files.size(anchorFile) : 0;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private long getMetadataFileSize() {
+        try {
+            return Files.size(metadataFilePath());
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    public DigitalDocument getDigitalDocument() throws PluginException {
+        Fileformat ff = getFileformat();
+        if (ff == null) {
+            return null;
+        }
+        try {
+            return ff.getDigitalDocument();
+        } catch (PreferencesException e) {
+            throw new PluginException("Errors happened while trying to initialize the DigitalDocument", e);
+        }
+    }
+
+    /**
+     * Get a {@link VariableReplacer} suitable for the given value. The METS file is only read if the value references metadata.
+     *
+     * @param value the value that is going to be replaced
+     * @return a VariableReplacer for this process
+     * @throws PluginException if the metadata file could not be read
+     */
+    public VariableReplacer getVariableReplacer(String value) throws PluginException {
+        if (requiresMetadata(value)) {
+            return getVariableReplacer();
+        }
+        synchronized (this) {
+            if (metadataReplacer != null) {
+                return metadataReplacer;
+            }
+        }
+        return getPlainVariableReplacer();
+    }
+
+    /**
+     * Get a {@link VariableReplacer} without access to the digital document. It resolves all tokens except metadata and never reads the METS
+     * file.
+     *
+     * @return a VariableReplacer without metadata access
+     */
+    public synchronized VariableReplacer getPlainVariableReplacer() {
+        if (plainReplacer == null) {
+            plainReplacer = new VariableReplacer(null, null, process, step);
+        }
+        return plainReplacer;
+    }
+
+    /**
+     * Get the modification time and size of meta.xml and meta_anchor.xml without reading the files
+     *
+     * @return a string that changes whenever one of the metadata files changes
+     * @throws PluginException if the metadata folder of the process cannot be determined
+     */
+    public String getMetadataFileStamp() throws PluginException {
+        try {
+            Path file = metadataFilePath();
+            return stamp(file) + "/" + stamp(file.resolveSibling("meta_anchor.xml"));
+        } catch (IOException e) {
+            throw new PluginException("Cannot access the metadata file of process " + process.getId(), e);
+        } catch (Exception e) {
+            throw new PluginException("Cannot determine the metadata file of process " + process.getId(), e);
+        }
+    }
+
+    private static String stamp(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return "-";
+        }
+        return Files.getLastModifiedTime(file).toMillis() + ":" + Files.size(file);
+    }
+
+    /**
+     * Get a {@link VariableReplacer} backed by the digital document of the process, reading the METS file if necessary
+     *
+     * @return a VariableReplacer with metadata access
+     * @throws PluginException if the metadata file could not be read
+     */
+    public synchronized VariableReplacer getVariableReplacer() throws PluginException {
+        if (metadataReplacer == null) {
+            Prefs rulesetPrefs = prefs != null ? prefs : RulesetCache.getInstance().get(process.getRegelsatz());
+            metadataReplacer = new VariableReplacer(getDigitalDocument(), rulesetPrefs, process, step);
+        }
+        return metadataReplacer;
+    }
+}
@@ -0,0 +1,195 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+
+import lombok.Getter;
+
+/**
+ * Collects the generated property values of one process and keeps only those that actually change the stored data.
+ *
+ * Values that are identical to the existing property are dropped. If several definitions write the same property name, the last value wins and
+ * the property is written only once, or not at all if the last value is the stored one. The stored properties are only updated when the changes
+ * are requested, so every value is compared with the stored data and not with an earlier value of this set. The existing properties of the process are indexed by name on first use, so every lookup is a single hash
+ * access. If the process already contains several properties with the same name, the {@link DuplicatePolicy} decides which of them are updated.
+ */
+public class PropertyChangeSet {
+
+    /**
+     * How to handle several existing properties with the same name
+     */
+    public enum DuplicatePolicy {
+        /**
+         * update only the first property with the name and leave the others untouched
+         */
+        FIRST,
+        /**
+         * update all properties with the name
+         */
+        ALL,
+        /**
+         * update the first property with the name and delete the others
+         */
+        COLLAPSE
+    }
+
+    @Getter
+    private final Process process;
+    @Getter
+    private final DuplicatePolicy duplicatePolicy;
+    /**
+     * the last value of every property name that differs from the stored one
+     */
+    private final Map<String, String> changedValues = new LinkedHashMap<>();
+    /**
+     * the properties that are written for a property name, created on first use so that repeated calls return the same objects
+     */
+    private final Map<String, List<GoobiProperty>> targets = new HashMap<>();
+    private final Set<String> unchangedNames = new HashSet<>();
+    private Map<String, List<GoobiProperty>> existingProperties;
+    private int skippedCount;
+
+    public PropertyChangeSet(Process process) {
+        this(process, DuplicatePolicy.FIRST);
+    }
+
+    public PropertyChangeSet(Process process, DuplicatePolicy duplicatePolicy) {
+        this.process = process;
+        this.duplicatePolicy = duplicatePolicy;
+    }
+
+    /**
+     * Record the generated value of a property. A later value for the same name replaces this one.
+     *
+     * @param name the property name
+     * @param value the generated value
+     * @return true if the value differs from the stored one and will be written
+     */
+    public boolean set(String name, String value) {
+        if (isUnchanged(findExisting(name), value)) {
+            changedValues.remove(name);
+            unchangedNames.add(name);
+            return false;
+        }
+        unchangedNames.remove(name);
+        changedValues.put(name, value);
+        return true;
+    }
+
+    private boolean isUnchanged(List<GoobiProperty> existing, String value) {
+        if (existing.isEmpty()) {
+            return false;
+        }
+        switch (duplicatePolicy) {
+            case ALL:
+                return existing.stream().allMatch(p -> Objects.equals(p.getPropertyValue(), value));
+            case COLLAPSE:
+                return existing.size() == 1 && Objects.equals(existing.get(0).getPropertyValue(), value);
+            default:
+                return Objects.equals(existing.get(0).getPropertyValue(), value);
+        }
+    }
+
+    /**
+     * Count properties as unchanged without looking at them, e.g. when the whole generation was skipped
+     *
+     * @param count the number of unchanged properties
+     */
+    public void addUnchanged(int count) {
+        skippedCount += count;
+    }
+
+    /**
+     * @return the number of properties that keep their stored value
+     */
+    public int getUnchangedCount() {
+        return skippedCount + unchangedNames.size();
+    }
+
+    /**
+     * @param name the property name
+     * @return the value that is currently stored for the first property with this name, or null if the property does not exist
+     */
+    public String getExistingValue(String name) {
+        List<GoobiProperty> existing = findExisting(name);
+        return existing.isEmpty() ? null : existing.get(0).getPropertyValue();
+    }
+
+    /**
+     * @return the properties with their new values. The existing properties of the process are updated in place, so this is called after the
+     *         last value was set.
+     */
+    public List<GoobiProperty> getChanges() {
+        List<GoobiProperty> result = new ArrayList<>(changedValues.size());
+        for (Map.Entry<String, String> change : changedValues.entrySet()) {
+            for (GoobiProperty property : targets.computeIfAbsent(change.getKey(), this::createTargets)) {
+                property.setPropertyValue(change.getValue());
+                result.add(property);
+            }
+        }
+        return result;
+    }
+
+    private List<GoobiProperty> createTargets(String name) {
+        List<GoobiProperty> existing = findExisting(name);
+        List<GoobiProperty> properties;
+        if (existing.isEmpty()) {
+            properties = List.of(new GoobiProperty(GoobiProperty.PropertyOwnerType.PROCESS));
+        } else if (duplicatePolicy == DuplicatePolicy.ALL) {
+            properties = existing;
+        } else {
+            properties = List.of(existing.get(0));
+        }
+        for (GoobiProperty property : properties) {
+            property.setOwner(process);
+            property.setPropertyName(name);
+        }
+        return properties;
+    }
+
+    /**
+     * @return duplicate properties that have to be deleted because of the {@link DuplicatePolicy#COLLAPSE} policy
+     */
+    public List<GoobiProperty> getDeletions() {
+        List<GoobiProperty> deletions = new ArrayList<>();
+        if (duplicatePolicy == DuplicatePolicy.COLLAPSE) {
+            for (String name : changedValues.keySet()) {
+                List<GoobiProperty> existing = findExisting(name);
+                if (existing.size() > 1) {
+                    deletions.addAll(existing.subList(1, existing.size()));
+                }
+            }
+        }
+        return deletions;
+    }
+
+    public boolean isEmpty() {
+        // duplicates are only deleted together with a changed value
+        return changedValues.isEmpty();
+    }
+
+    private List<GoobiProperty> findExisting(String name) {
+        if (existingProperties == null) {
+            // the property list of the process is loaded lazily, so it is read exactly once here
+            existingProperties = new HashMap<>();
+            List<GoobiProperty> properties = process.getProperties();
+            if (properties != null) {
+                for (GoobiProperty property : properties) {
+                    if (property.getPropertyName() != null) {
+                        existingProperties.computeIfAbsent(property.getPropertyName(), key -> new ArrayList<>(1)).add(property);
+                    }
+                }
+            }
+        }
+        return existingProperties.getOrDefault(name, List.of());
+    }
+}
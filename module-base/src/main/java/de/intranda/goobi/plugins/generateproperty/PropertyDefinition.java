@@ -0,0 +1,240 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.List;
+
+import org.apache.commons.digester.plugins.PluginException;
+import org.goobi.beans.Process;
+import org.goobi.production.enums.LogType;
+
+import de.sub.goobi.helper.Helper;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * A configured <code>property</code> element. Instances don't hold any process specific state and can be shared between step runs.
+ *
+ * The optional <code>when</code> and <code>unless</code> conditions are checked before the value is generated, see {@link PropertyGuard}. All
+ * <code>{{...}}</code> expressions of the value and the conditions are compiled when the configuration is loaded and evaluated directly from
+ * these plans.
+ */
+@Getter
+@Log4j2
+public class PropertyDefinition {
+    private final String name;
+    private final PropertyTemplate template;
+    private final List<ValueTransformation> replacements;
+    private final PropertyGuard when;
+    private final PropertyGuard unless;
+    @Getter(AccessLevel.NONE)
+    private final CompiledExpressions templateExpressions;
+    @Getter(AccessLevel.NONE)
+    private final CompiledExpressions whenExpressions;
+    @Getter(AccessLevel.NONE)
+    private final CompiledExpressions unlessExpressions;
+
+    /**
+     * The compiled <code>{{...}}</code> expressions of a template, indexed by their slot in {@link PropertyTemplate#getSpecialExpressions()}.
+     * Each slot is either an aggregation over the structure tree or a path that is bound to {@link Process}.
+     */
+    record CompiledExpressions(StructureQuery[] queries, CompiledPath[] paths) {
+        private static final CompiledExpressions NONE = new CompiledExpressions(new StructureQuery[0], new CompiledPath[0]);
+
+        /**
+         * Compile all expressions, so an invalid aggregation or a misspelled property fails when the configuration is loaded
+         */
+        static CompiledExpressions compile(PropertyTemplate source) {
+            List<String> expressions = source.getSpecialExpressions();
+            StructureQuery[] queries = new StructureQuery[expressions.size()];
+            CompiledPath[] paths = new CompiledPath[expressions.size()];
+            for (int slot = 0; slot < expressions.size(); slot++) {
+                String expression = expressions.get(slot);
+                if (StructureQuery.isQuery(expression)) {
+                    queries[slot] = StructureQuery.compile(expression);
+                } else {
+                    paths[slot] = ReflectionPathParser.compile(Process.class, expression);
+                }
+            }
+            return new CompiledExpressions(queries, paths);
+        }
+
+        /**
+         * @return the aggregation of the slot, or null if the expression is a path. An expression without slot, that was found in a resolved
+         *         value, is compiled through the cache.
+         */
+        StructureQuery query(int slot, String expression) {
+            if (slot < 0) {
+                return StructureQuery.isQuery(expression) ? StructureQuery.compile(expression) : null;
+            }
+            return queries[slot];
+        }
+
+        /**
+         * @return the path of the slot, or null if the expression is an aggregation. An expression without slot, that was found in a resolved
+         *         value, is compiled through the cache and not bound, so a misspelled property fails like any other missing method.
+         */
+        CompiledPath path(int slot, String expression) {
+            if (slot < 0) {
+                return StructureQuery.isQuery(expression) ? null : ReflectionPathParser.compile(expression);
+            }
+            return paths[slot];
+        }
+    }
+
+    public PropertyDefinition(@NonNull String name, @NonNull String rawString, @NonNull List<? extends ValueTransformation> replacements) {
+        this(name, rawString, replacements, null, null);
+    }
+
+    /**
+     * @param name the property name
+     * @param rawString the value with <code>{{...}}</code> expressions and variables
+     * @param replacements the <code>replace</code> and <code>map</code> elements in configuration order
+     * @param when condition that must hold for the property to be generated, or null
+     * @param unless condition that must not hold for the property to be generated, or null
+     * @throws IllegalArgumentException if an aggregation, a reflection path or a condition is invalid
+     */
+    public PropertyDefinition(@NonNull String name, @NonNull String rawString, @NonNull List<? extends ValueTransformation> replacements, String when,
+            String unless) {
+        this.name = name;
+        this.template = PropertyTemplate.compile(rawString);
+        this.replacements = List.copyOf(replacements);
+        this.when = when != null ? PropertyGuard.compile(when) : null;
+        this.unless = unless != null ? PropertyGuard.compile(unless) : null;
+        this.templateExpressions = CompiledExpressions.compile(template);
+        this.whenExpressions = compileOperand(this.when);
+        this.unlessExpressions = compileOperand(this.unless);
+    }
+
+    private static CompiledExpressions compileOperand(PropertyGuard guard) {
+        return guard != null && guard.getOperand() != null ? CompiledExpressions.compile(guard.getOperand()) : CompiledExpressions.NONE;
+    }
+
+    /**
+     * @param source the value template or the operand of a condition of this definition
+     * @return the compiled <code>{{...}}</code> expressions of the template
+     */
+    CompiledExpressions getCompiledExpressions(PropertyTemplate source) {
+        if (source == template) {
+            return templateExpressions;
+        }
+        if (when != null && source == when.getOperand()) {
+            return whenExpressions;
+        }
+        if (unless != null && source == unless.getOperand()) {
+            return unlessExpressions;
+        }
+        throw new IllegalArgumentException("The template '" + source.getRawString() + "' does not belong to property '" + name + "'");
+    }
+
+    /**
+     * @return the <code>when</code> and <code>unless</code> conditions that are configured
+     */
+    public List<PropertyGuard> getGuards() {
+        if (when == null) {
+            return unless == null ? List.of() : List.of(unless);
+        }
+        return unless == null ? List.of(when) : List.of(when, unless);
+    }
+
+    /**
+     * Check the <code>when</code> and <code>unless</code> conditions. <code>when</code> is checked first, so <code>unless</code> is not rendered
+     * if <code>when</code> already fails.
+     *
+     * @param context the context of the current run
+     * @param existingValue the stored value of the property, or null if the process has no such property
+     * @return true if the property has to be generated
+     * @throws PluginException if the left side of a comparison cannot be rendered
+     */
+    public boolean isApplicable(GenerationContext context, String existingValue) throws PluginException {
+        if (when != null && !test(context, when, whenExpressions, existingValue)) {
+            return false;
+        }
+        return unless == null || !test(context, unless, unlessExpressions, existingValue);
+    }
+
+    private boolean test(GenerationContext context, PropertyGuard guard, CompiledExpressions expressions, String existingValue)
+            throws PluginException {
+        String operand = guard.getOperand() != null ? render(context, guard.getOperand(), expressions) : null;
+        return guard.test(operand, existingValue);
+    }
+
+    public String generate(GenerationContext context) throws PluginException {
+        var result = render(context, template, templateExpressions);
+        if (!replacements.isEmpty()) {
+            long start = System.nanoTime();
+            for (ValueTransformation r : replacements) {
+                try {
+                    result = r.apply(result);
+                } catch (PluginException e) {
+                    context.getMetrics().incrementReplacementTimeouts();
+                    String message = "Error during replacement of property '" + name + "': " + e.getMessage();
+                    Helper.addMessageToProcessJournal(context.getProcess().getId(), LogType.ERROR, message);
+                    throw new PluginException(message, e);
+                }
+            }
+            context.record(Phase.REGEX_REPLACEMENT, start);
+        }
+        return result;
+    }
+
+    /**
+     * Resolve the <code>{{...}}</code> expressions and variables of a template
+     */
+    private String render(GenerationContext context, PropertyTemplate source, CompiledExpressions expressions) throws PluginException {
+        long start = System.nanoTime();
+        PropertyTemplate.Rendered rendered = source
+                .render((slot, expression) -> context.resolveSpecial(expression, e -> specialReplacementValue(context, expressions, slot, e)));
+        if (source.hasSpecialExpressions()) {
+            context.record(Phase.SPECIAL_REPLACEMENT, start);
+        }
+        var result = rendered.value();
+        if (rendered.containsVariables()) {
+            result = context.replaceMetadataFields(result);
+            start = System.nanoTime();
+            result = context.replaceVariables(result);
+            context.record(Phase.VARIABLE_REPLACEMENT, start);
+        }
+        return result;
+    }
+
+    public String getRawString() {
+        return template.getRawString();
+    }
+
+    /**
+     * @return a string that changes whenever anything of this definition changes
+     */
+    public String getSignature() {
+        StringBuilder signature = new StringBuilder(name).append('\u0000').append(getRawString());
+        for (ValueTransformation r : replacements) {
+            signature.append('\u0000').append(r.getSignature());
+        }
+        for (PropertyGuard guard : getGuards()) {
+            signature.append('\u0000').append(guard == when ? "when" : "unless").append('\u0000').append(guard.getExpression());
+        }
+        return signature.toString();
+    }
+
+    private String specialReplacementValue(GenerationContext context, CompiledExpressions expressions, int slot, String value) {
+        Process process = context.getProcess();
+        try {
+            StructureQuery query = expressions.query(slot, value);
+            String resolved = query != null ? query.evaluate(context.getMetadata().getDigitalDocument())
+                    : expressions.path(slot, value).evaluateToString(process);
+            return resolved != null ? resolved : "null";
+        } catch (NullPointerException e) {
+            return "null";
+        } catch (NoSuchMethodException e) {
+            context.getMetrics().incrementSpecialReplacementFailures();
+            context.getSpecialReplacementErrors().add(value, e);
+            log.debug("Error during special replacement of '{}', no such method: {}", value, e.getMessage(), e);
+            return value;
+        } catch (Exception e) {
+            context.getMetrics().incrementSpecialReplacementFailures();
+            context.getSpecialReplacementErrors().add(value, e);
+            log.debug("Error during special replacement of '{}': {}", value, e.getMessage(), e);
+            throw new RuntimeException("Error during special replacement: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.digester.plugins.PluginException;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Generates the values of all configured properties of one process. This is the part of the step that is shared by the step plugin itself and
+ * the {@link BulkPropertyGenerator}.
+ */
+@Log4j2
+public class PropertyGenerator {
+
+    private PropertyGenerator() {
+    }
+
+    /**
+     * Evaluate all definitions in configuration order and collect the resulting values. Definitions whose <code>when</code> or
+     * <code>unless</code> condition fails are skipped, if all of them are skipped nothing else is evaluated. In incremental mode, nothing is
+     * evaluated if the fingerprint of the inputs and stored values matches the one of the last run. All failed <code>{{...}}</code> paths are
+     * written to the process journal as a single entry at the end.
+     *
+     * @param context the context of the process
+     * @param configuration the configuration of the step
+     * @return the changed properties of the process
+     * @throws PluginException if a value cannot be generated
+     */
+    public static PropertyChangeSet generate(GenerationContext context, PluginConfiguration configuration) throws PluginException {
+        try {
+            return generateChanges(context, configuration);
+        } finally {
+            context.getSpecialReplacementErrors().writeToJournal(context.getProcess().getId());
+        }
+    }
+
+    private static PropertyChangeSet generateChanges(GenerationContext context, PluginConfiguration configuration) throws PluginException {
+        List<PropertyDefinition> definitions = configuration.getPropertyDefinitions();
+        PropertyChangeSet changes = new PropertyChangeSet(context.getProcess(), configuration.getDuplicatePolicy());
+        if (configuration.isStreamingMetadata()) {
+            context.getMetadata().enableStreaming(configuration.getMetadataFields());
+        }
+        if (configuration.getMetadataCacheSize() > 0) {
+            context.getMetadata().enableCache(configuration.getMetadataCacheSize() * 1024 * 1024);
+        }
+        List<PropertyDefinition> applicable = selectApplicable(context, definitions, changes);
+        if (applicable.isEmpty()) {
+            log.debug("No property of process {} passed its conditions, skipping property generation", context.getProcess().getId());
+            changes.addUnchanged(definitions.size());
+            context.getMetrics().addGuardSkipped(definitions.size());
+            return changes;
+        }
+        String inputs = null;
+        if (configuration.isIncremental()) {
+            inputs = InputFingerprint.computeInputs(context, configuration);
+            Map<String, String> storedValues = new LinkedHashMap<>();
+            for (PropertyDefinition pd : definitions) {
+                storedValues.put(pd.getName(), changes.getExistingValue(pd.getName()));
+            }
+            String fingerprint = InputFingerprint.combine(inputs, InputFingerprint.computeOutputs(storedValues.values()));
+            if (fingerprint.equals(changes.getExistingValue(configuration.getFingerprintProperty()))) {
+                log.debug("Inputs of process {} are unchanged, skipping property generation", context.getProcess().getId());
+                changes.addUnchanged(definitions.size());
+                context.getMetrics().addUnchangedSkipped(definitions.size());
+                return changes;
+            }
+        }
+
+        List<String> generated = evaluate(context, applicable, configuration.getParallelDefinitions());
+        Map<String, String> values = new LinkedHashMap<>();
+        int next = 0;
+        for (PropertyDefinition pd : definitions) {
+            if (next < applicable.size() && applicable.get(next) == pd) {
+                changes.set(pd.getName(), generated.get(next));
+                values.put(pd.getName(), generated.get(next++));
+            } else if (!values.containsKey(pd.getName())) {
+                // skipped by its conditions, the stored value stays as it is
+                values.put(pd.getName(), changes.getExistingValue(pd.getName()));
+            }
+        }
+        if (inputs != null) {
+            changes.set(configuration.getFingerprintProperty(), InputFingerprint.combine(inputs, InputFingerprint.computeOutputs(values.values())));
+        }
+        context.getMetrics().addPropertiesGenerated(applicable.size());
+        context.getMetrics().addGuardSkipped(definitions.size() - applicable.size());
+        context.getMetrics().addUnchangedSkipped(changes.getUnchangedCount());
+        return changes;
+    }
+
+    /**
+     * Check the <code>when</code> and <code>unless</code> conditions of all definitions. Conditions only look at the stored property values and
+     * the process unless they reference metadata themselves, so a process whose definitions are all skipped never reads the METS file.
+     */
+    private static List<PropertyDefinition> selectApplicable(GenerationContext context, List<PropertyDefinition> definitions,
+            PropertyChangeSet changes) throws PluginException {
+        List<PropertyDefinition> applicable = new ArrayList<>(definitions.size());
+        for (PropertyDefinition pd : definitions) {
+            if (pd.getGuards().isEmpty() || pd.isApplicable(context, changes.getExistingValue(pd.getName()))) {
+                applicable.add(pd);
+            }
+        }
+        return applicable;
+    }
+
+    /**
+     * Evaluate the definitions, at most <code>parallelism</code> of them at the same time on virtual threads. The values are returned in
+     * configuration order. If a definition fails, the evaluation of the remaining definitions is cancelled and the first error in configuration
+     * order is thrown.
+     *
+     * The definitions share the process of the context. All access to it goes through the {@link GenerationContext}, which serializes it.
+     */
+    private static List<String> evaluate(GenerationContext context, List<PropertyDefinition> definitions, int parallelism) throws PluginException {
+        List<String> values = new ArrayList<>(definitions.size());
+        if (parallelism <= 1 || definitions.size() <= 1) {
+            for (PropertyDefinition pd : definitions) {
+                values.add(pd.generate(context));
+            }
+            return values;
+        }
+        Semaphore permits = new Semaphore(parallelism);
+        List<Future<String>> futures = new ArrayList<>(definitions.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (PropertyDefinition pd : definitions) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return pd.generate(context);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            try {
+                for (Future<String> future : futures) {
+                    values.add(future.get());
+                }
+            } catch (ExecutionException e) {
+                futures.forEach(future -> future.cancel(true));
+                throw unwrap(e.getCause());
+            } catch (InterruptedException e) {
+                futures.forEach(future -> future.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new PluginException("Interrupted during property generation", e);
+            }
+        }
+        return values;
+    }
+
+    private static PluginException unwrap(Throwable cause) {
+        if (cause instanceof PluginException pluginException) {
+            return pluginException;
+        }
+        if (cause instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new PluginException(cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,84 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A <code>when</code> or <code>unless</code> condition of a property, compiled once when the configuration is loaded.
+ *
+ * <code>exists</code> is true if the process already has a property with the name of the definition, <code>empty</code> if it has none or only
+ * an empty one. A comparison like <code>{{projekt.titel}} == 'Archive'</code> or <code>{processtitle} != 'test'</code> renders the left side like
+ * the value of a property and compares it with the quoted text, a quote inside the text is written twice.
+ */
+public final class PropertyGuard {
+    private static final Pattern COMPARISON = Pattern.compile("(.*?)\\s*(==|!=)\\s*'((?:[^']|'')*)'", Pattern.DOTALL);
+
+    public enum Kind {
+        EXISTS,
+        EMPTY,
+        EQUALS,
+        NOT_EQUALS
+    }
+
+    @Getter
+    private final String expression;
+    @Getter
+    private final Kind kind;
+    /**
+     * the left side of a comparison, null for <code>exists</code> and <code>empty</code>
+     */
+    @Getter
+    private final PropertyTemplate operand;
+    private final String text;
+
+    private PropertyGuard(String expression, Kind kind, PropertyTemplate operand, String text) {
+        this.expression = expression;
+        this.kind = kind;
+        this.operand = operand;
+        this.text = text;
+    }
+
+    /**
+     * @param expression the condition
+     * @return the compiled condition
+     * @throws IllegalArgumentException if the condition is invalid
+     */
+    public static PropertyGuard compile(@NonNull String expression) {
+        String trimmed = expression.trim();
+        if ("exists".equalsIgnoreCase(trimmed)) {
+            return new PropertyGuard(expression, Kind.EXISTS, null, null);
+        }
+        if ("empty".equalsIgnoreCase(trimmed)) {
+            return new PropertyGuard(expression, Kind.EMPTY, null, null);
+        }
+        Matcher matcher = COMPARISON.matcher(trimmed);
+        if (!matcher.matches() || matcher.group(1).isEmpty()) {
+            throw new IllegalArgumentException("Invalid condition '" + expression + "', expected exists, empty or a comparison with == or !=");
+        }
+        Kind kind = "==".equals(matcher.group(2)) ? Kind.EQUALS : Kind.NOT_EQUALS;
+        return new PropertyGuard(expression, kind, PropertyTemplate.compile(matcher.group(1)), matcher.group(3).replace("''", "'"));
+    }
+
+    /**
+     * Evaluate the condition
+     *
+     * @param operandValue the rendered left side of a comparison, ignored for <code>exists</code> and <code>empty</code>
+     * @param existingValue the stored value of the property, or null if the process has no such property
+     * @return true if the condition holds
+     */
+    public boolean test(String operandValue, String existingValue) {
+        switch (kind) {
+            case EXISTS:
+                return existingValue != null;
+            case EMPTY:
+                return existingValue == null || existingValue.isEmpty();
+            case EQUALS:
+                return text.equals(operandValue);
+            default:
+                return !text.equals(operandValue);
+        }
+    }
+}
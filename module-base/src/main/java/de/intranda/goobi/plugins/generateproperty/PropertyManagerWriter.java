@@ -0,0 +1,34 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import org.goobi.beans.GoobiProperty;
+
+import de.sub.goobi.persistence.managers.PropertyManager;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Default {@link PropertyWriter} that stores the changed properties through the {@link PropertyManager}.
+ *
+ * All values of a process are generated before anything is written, so a failing definition leaves the stored properties untouched. Unchanged
+ * values never reach the database. Duplicates that are collapsed into one property are deleted after the changed values were saved.
+ *
+ * Writing itself is neither batched nor atomic: every changed property and every deletion is a separate call of the {@link PropertyManager}
+ * with its own round trip and commit. If the database fails in between, the properties that were saved before stay saved.
+ */
+@Log4j2
+public class PropertyManagerWriter implements PropertyWriter {
+
+    @Override
+    public void write(PropertyChangeSet changes) {
+        if (changes.isEmpty()) {
+            log.debug("No changed properties for process {}", changes.getProcess().getId());
+            return;
+        }
+        for (GoobiProperty property : changes.getChanges()) {
+            PropertyManager.saveProperty(property);
+        }
+        for (GoobiProperty property : changes.getDeletions()) {
+            PropertyManager.deleteProperty(property);
+            changes.getProcess().getProperties().remove(property);
+        }
+    }
+}
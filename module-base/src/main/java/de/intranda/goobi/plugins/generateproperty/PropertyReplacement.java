@@ -0,0 +1,139 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.regex.Pattern;
+
+import org.apache.commons.digester.plugins.PluginException;
+
+import com.google.re2j.PatternSyntaxException;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A <code>replace</code> element of a property. The regular expression and the replacement are validated and compiled once when the configuration
+ * is loaded.
+ *
+ * With the <code>java</code> engine, a match may take at most {@link #getTimeout() timeout} milliseconds, otherwise the replacement fails. The
+ * <code>linear</code> engine uses RE2/J, which can't run away on any input and doesn't need a time limit, but doesn't support expressions that
+ * need backtracking like back references or lookarounds. The <code>auto</code> engine uses the linear engine whenever the expression allows it.
+ */
+@Getter
+public class PropertyReplacement implements ValueTransformation {
+    public static final long DEFAULT_TIMEOUT = 1000;
+
+    public enum Engine {
+        JAVA,
+        LINEAR,
+        AUTO
+    }
+
+    private final Pattern pattern;
+    private final String replacement;
+    /**
+     * time budget of a single replacement in milliseconds, 0 for no limit
+     */
+    private final long timeout;
+    @Getter(AccessLevel.NONE)
+    private final com.google.re2j.Pattern linearPattern;
+
+    public PropertyReplacement(@NonNull String regex, @NonNull String replacement) {
+        this(regex, replacement, Engine.JAVA, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param regex the regular expression
+     * @param replacement the replacement with optional group references like <code>$1</code>
+     * @param engine the engine to use for matching
+     * @param timeout time budget of a single replacement with the java engine in milliseconds, 0 for no limit
+     * @throws IllegalArgumentException if the expression or the replacement are invalid, or the expression is not supported by the linear engine
+     */
+    public PropertyReplacement(@NonNull String regex, @NonNull String replacement, @NonNull Engine engine, long timeout) {
+        this.pattern = Pattern.compile(regex);
+        this.replacement = replacement;
+        this.timeout = timeout;
+        com.google.re2j.Pattern linear = null;
+        if (engine != Engine.JAVA) {
+            try {
+                linear = com.google.re2j.Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                if (engine == Engine.LINEAR) {
+                    throw new IllegalArgumentException("The regular expression '" + regex + "' is not supported by the linear engine: "
+                            + e.getMessage(), e);
+                }
+            }
+        }
+        this.linearPattern = linear;
+        validateReplacement(replacement, pattern.matcher("").groupCount());
+    }
+
+    /**
+     * Check the group references of a replacement, both engines would only fail on the first match
+     *
+     * @param replacement the replacement
+     * @param groupCount the number of groups of the expression
+     * @throws IllegalArgumentException if the replacement is invalid
+     */
+    private static void validateReplacement(String replacement, int groupCount) {
+        int i = 0;
+        while (i < replacement.length()) {
+            char c = replacement.charAt(i++);
+            if (c == '\\') {
+                if (i++ >= replacement.length()) {
+                    throw new IllegalArgumentException("Character to be escaped is missing in replacement '" + replacement + "'");
+                }
+            } else if (c == '$') {
+                if (i >= replacement.length()) {
+                    throw new IllegalArgumentException("Group index is missing in replacement '" + replacement + "'");
+                }
+                if (replacement.charAt(i) == '{') {
+                    // named groups are only checked for syntax
+                    int end = replacement.indexOf('}', i);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("Named group reference is not closed in replacement '" + replacement + "'");
+                    }
+                    i = end + 1;
+                    continue;
+                }
+                int group = Character.digit(replacement.charAt(i++), 10);
+                if (group < 0) {
+                    throw new IllegalArgumentException("Illegal group reference in replacement '" + replacement + "'");
+                }
+                if (group > groupCount) {
+                    throw new IllegalArgumentException("No group " + group + " for replacement '" + replacement + "'");
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the linear engine is used for this replacement
+     */
+    public boolean isLinear() {
+        return linearPattern != null;
+    }
+
+    public String replace(String value) throws PluginException {
+        if (linearPattern != null) {
+            return linearPattern.matcher(value).replaceAll(replacement);
+        }
+        if (timeout <= 0) {
+            return pattern.matcher(value).replaceAll(replacement);
+        }
+        try {
+            return pattern.matcher(new BudgetedCharSequence(value, timeout)).replaceAll(replacement);
+        } catch (BudgetedCharSequence.BudgetExceededException e) {
+            throw new PluginException("The regular expression '" + pattern.pattern() + "' exceeded its time budget of " + timeout + " ms");
+        }
+    }
+
+    @Override
+    public String apply(String value) throws PluginException {
+        return replace(value);
+    }
+
+    @Override
+    public String getSignature() {
+        return "replace\u0000" + pattern.pattern() + "\u0000" + replacement;
+    }
+}
@@ -0,0 +1,186 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.Getter;
+
+/**
+ * The <code>value</code> of a property, compiled once into a list of literal text and <code>{{...}}</code> segments.
+ *
+ * Rendering is a single pass over the segments. Identical <code>{{...}}</code> expressions are resolved only once per rendering. If a resolved
+ * value contains <code>{{</code> itself, the rendered text is searched again for expressions, like before the templates were compiled. Literal text
+ * that may contain tokens of the {@link de.sub.goobi.helper.VariableReplacer} is detected at compile time, so the VariableReplacer can be skipped
+ * for values that cannot contain any of its tokens.
+ */
+public final class PropertyTemplate {
+    private static final Pattern SPECIAL_PATTERN = Pattern.compile("\\{\\{(.*?)\\}\\}");
+    /**
+     * maximum number of expressions resolved after a rendering, e.g. if a value contains its own expression
+     */
+    private static final int MAX_RESCANS = 100;
+
+    @Getter
+    private final String rawString;
+    private final Segment[] segments;
+    /**
+     * distinct special expressions in order of their first occurrence
+     */
+    @Getter
+    private final List<String> specialExpressions;
+    private final boolean literalVariables;
+    private final int literalLength;
+
+    private sealed interface Segment permits Literal, Special {
+    }
+
+    private record Literal(String text) implements Segment {
+    }
+
+    private record Special(int slot) implements Segment {
+    }
+
+    private PropertyTemplate(String rawString, List<Segment> segments, List<String> specialExpressions) {
+        this.rawString = rawString;
+        this.segments = segments.toArray(new Segment[segments.size()]);
+        this.specialExpressions = List.copyOf(specialExpressions);
+        boolean variables = false;
+        int length = 0;
+        for (Segment segment : segments) {
+            if (segment instanceof Literal literal) {
+                variables |= mayContainVariables(literal.text());
+                length += literal.text().length();
+            }
+        }
+        this.literalVariables = variables;
+        this.literalLength = length;
+    }
+
+    public static PropertyTemplate compile(String rawString) {
+        List<Segment> segments = new ArrayList<>();
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        Matcher matcher = SPECIAL_PATTERN.matcher(rawString);
+        int position = 0;
+        while (matcher.find()) {
+            if (matcher.start() > position) {
+                segments.add(new Literal(rawString.substring(position, matcher.start())));
+            }
+            Integer slot = slots.computeIfAbsent(matcher.group(1), expression -> slots.size());
+            segments.add(new Special(slot));
+            position = matcher.end();
+        }
+        if (position < rawString.length()) {
+            segments.add(new Literal(rawString.substring(position)));
+        }
+        return new PropertyTemplate(rawString, segments, new ArrayList<>(slots.keySet()));
+    }
+
+    /**
+     * Check if a text may contain tokens of the VariableReplacer, e.g. <code>{processtitle}</code> or <code>(meta.Title)</code>
+     *
+     * @param text the text to check
+     * @return false if the VariableReplacer would certainly return the text unchanged
+     */
+    public static boolean mayContainVariables(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '{' || c == '(' || c == '$') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean hasSpecialExpressions() {
+        return !specialExpressions.isEmpty();
+    }
+
+    /**
+     * Resolves the <code>{{...}}</code> expressions during a rendering
+     */
+    @FunctionalInterface
+    public interface Resolver {
+
+        /**
+         * @param slot the index of the expression in {@link PropertyTemplate#getSpecialExpressions()}, or -1 if the expression was found in a
+         *            resolved value
+         * @param expression the expression without the curly brackets
+         * @return the value of the expression
+         */
+        String resolve(int slot, String expression);
+    }
+
+    /**
+     * Render the template, resolving every distinct <code>{{...}}</code> expression once
+     *
+     * @param resolver resolves an expression without the curly brackets to its value
+     * @return the rendered value and whether it has to be passed to the VariableReplacer
+     */
+    public Rendered render(UnaryOperator<String> resolver) {
+        return render((slot, expression) -> resolver.apply(expression));
+    }
+
+    /**
+     * Render the template, resolving every distinct <code>{{...}}</code> expression once. The resolver gets the slot of the expression, so
+     * callers can keep something they prepared for each expression in an array.
+     *
+     * @param resolver resolves an expression to its value
+     * @return the rendered value and whether it has to be passed to the VariableReplacer
+     */
+    public Rendered render(Resolver resolver) {
+        if (specialExpressions.isEmpty()) {
+            return new Rendered(rawString, literalVariables);
+        }
+        String[] values = new String[specialExpressions.size()];
+        boolean variables = literalVariables;
+        boolean rescan = false;
+        StringBuilder builder = new StringBuilder(literalLength + 16 * values.length);
+        for (Segment segment : segments) {
+            if (segment instanceof Literal literal) {
+                builder.append(literal.text());
+            } else if (segment instanceof Special special) {
+                String value = values[special.slot()];
+                if (value == null) {
+                    value = resolver.resolve(special.slot(), specialExpressions.get(special.slot()));
+                    values[special.slot()] = value;
+                    variables |= mayContainVariables(value);
+                    rescan |= value.contains("{{");
+                }
+                builder.append(value);
+            }
+        }
+        if (rescan) {
+            String value = rescan(builder.toString(), resolver);
+            return new Rendered(value, mayContainVariables(value));
+        }
+        return new Rendered(builder.toString(), variables);
+    }
+
+    /**
+     * Resolve the <code>{{...}}</code> expressions that came in with resolved values. As before the templates were compiled, the whole text is
+     * searched again after each replacement, and all occurrences of an expression are replaced at once.
+     */
+    private static String rescan(String value, Resolver resolver) {
+        Matcher matcher = SPECIAL_PATTERN.matcher(value);
+        for (int i = 0; i < MAX_RESCANS && matcher.find(); i++) {
+            String expression = matcher.group(1);
+            value = value.replace("{{" + expression + "}}", resolver.resolve(-1, expression));
+            matcher = SPECIAL_PATTERN.matcher(value);
+        }
+        return value;
+    }
+
+    /**
+     * The result of a rendering
+     *
+     * @param value the rendered text
+     * @param containsVariables true if the text may contain tokens for the VariableReplacer
+     */
+    public record Rendered(String value, boolean containsVariables) {
+    }
+}
@@ -0,0 +1,14 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+/**
+ * Persists the changed properties of a process.
+ */
+public interface PropertyWriter {
+
+    /**
+     * Write all changes of the given change set. Implementations must not do anything if the change set is empty.
+     *
+     * @param changes the changed properties of one process
+     */
+    void write(PropertyChangeSet changes);
+}
@@ -1,45 +1,42 @@
 package de.intranda.goobi.plugins.generateproperty;
 
-import java.lang.reflect.Method;
-import java.util.List;
-
 public class ReflectionPathParser {
-    public static String parse(Object root, String expression) throws Exception {
-        Object current = root;
-
-        // 1. Aufteilen am Punkt, z.B. ["schritte[0]", "bearbeitungsbenutzer", "standort"]
-        String[] parts = expression.split("\\.");
+    private static final int PATH_CACHE_SIZE = 256;
+    private static final LruCache<String, CompiledPath> PATH_CACHE = new LruCache<>(PATH_CACHE_SIZE);
+    private static final LruCache<BoundKey, CompiledPath> BOUND_PATH_CACHE = new LruCache<>(PATH_CACHE_SIZE);
 
-        for (String part : parts) {
-            // Prüfen ob Indexierung vorhanden: z.B. schritte[0]
-            if (part.contains("[") && part.contains("]")) {
-                String property = part.substring(0, part.indexOf('['));
-                int index = Integer.parseInt(part.substring(part.indexOf('[') + 1, part.indexOf(']')));
-
-                current = callGetter(current, property);
+    private record BoundKey(Class<?> rootType, String expression) {
+    }
 
-                if (current instanceof List<?> list) {
-                    current = list.get(index);
-                } else {
-                    throw new IllegalArgumentException("Property " + property + " is not a List");
-                }
-            } else {
-                // normaler Getter-Aufruf
-                current = callGetter(current, part);
-            }
+    public static String parse(Object root, String expression) throws Exception {
+        // Ausdruck nur einmal zerlegen, z.B. ["schritte[0]", "bearbeitungsbenutzer", "standort"]
+        return compile(expression).evaluateToString(root);
+    }
 
-            if (current == null) {
-                return null; // oder throw Exception je nach Wunsch
-            }
+    public static CompiledPath compile(String expression) {
+        CompiledPath path = PATH_CACHE.get(expression);
+        if (path == null) {
+            path = CompiledPath.compile(expression);
+            PATH_CACHE.put(expression, path);
         }
-
-        return current.toString();
+        return path;
     }
 
-    private static Object callGetter(Object obj, String property) throws Exception {
-        // Build getter name: getProperty (capitalize first letter)
-        String methodName = "get" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
-        Method method = obj.getClass().getMethod(methodName);
-        return method.invoke(obj);
+    /**
+     * Get a path whose getters are resolved against the declared types starting at the root type, see {@link CompiledPath#bind(Class)}
+     *
+     * @param rootType the declared type of the object the path is evaluated on
+     * @param expression the expression without the surrounding curly brackets
+     * @return the bound path
+     * @throws IllegalArgumentException if the expression is invalid or does not match the declared types
+     */
+    public static CompiledPath compile(Class<?> rootType, String expression) {
+        BoundKey key = new BoundKey(rootType, expression);
+        CompiledPath path = BOUND_PATH_CACHE.get(key);
+        if (path == null) {
+            path = compile(expression).bind(rootType);
+            BOUND_PATH_CACHE.put(key, path);
+        }
+        return path;
     }
 }
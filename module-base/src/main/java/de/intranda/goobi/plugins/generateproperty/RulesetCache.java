@@ -0,0 +1,143 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.digester.plugins.PluginException;
+import org.goobi.beans.Ruleset;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import lombok.extern.log4j.Log4j2;
+import ugh.dl.Prefs;
+import ugh.exceptions.PreferencesException;
+
+/**
+ * Server wide cache of parsed rulesets.
+ *
+ * Entries are keyed by the path and modification time of the ruleset file, so a changed ruleset is parsed again on the next access. If several
+ * threads request the same ruleset at the same time, only one of them parses the file and the others wait for its result. Failed loads are not
+ * cached. The cache is registered as MXBean under <code>de.intranda.goobi.plugins:type=GenerateProperty,name=RulesetCache</code>.
+ */
+@Log4j2
+public class RulesetCache implements RulesetCacheMXBean {
+    private static final int MAX_ENTRIES = 16;
+    private static final RulesetCache INSTANCE = MBeans.register(new RulesetCache(MAX_ENTRIES),
+            "de.intranda.goobi.plugins:type=GenerateProperty,name=RulesetCache", "the ruleset cache");
+
+    private final LruCache<Key, CompletableFuture<Prefs>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LatencyHistogram loadTimes = new LatencyHistogram();
+
+    private record Key(Path file, long lastModified) {
+    }
+
+    RulesetCache(int maxEntries) {
+        this.entries = new LruCache<>(maxEntries);
+    }
+
+    public static RulesetCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the parsed preferences of a ruleset. If the ruleset file cannot be found, the preferences are loaded by the ruleset itself.
+     *
+     * @param ruleset the ruleset of a process
+     * @return the parsed preferences
+     * @throws PluginException if the ruleset cannot be parsed
+     */
+    public Prefs get(Ruleset ruleset) throws PluginException {
+        Path file = Paths.get(ConfigurationHelper.getInstance().getRulesetFolder(), ruleset.getDatei());
+        long lastModified;
+        try {
+            lastModified = Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return ruleset.getPreferences();
+        }
+        return get(file, lastModified);
+    }
+
+    /**
+     * Get the parsed preferences of a ruleset file
+     *
+     * @param file the ruleset file
+     * @param lastModified the modification time of the file
+     * @return the parsed preferences
+     * @throws PluginException if the ruleset cannot be parsed
+     */
+    Prefs get(Path file, long lastModified) throws PluginException {
+        Key key = new Key(file, lastModified);
+        CompletableFuture<Prefs> created = new CompletableFuture<>();
+        CompletableFuture<Prefs> future = entries.computeIfAbsent(key, k -> created);
+        if (future == created) {
+            misses.increment();
+            // older versions of the same file are not needed anymore
+            entries.removeIf(k -> k.file().equals(file) && k.lastModified() != lastModified);
+            load(key, created);
+        } else {
+            hits.increment();
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PluginException("Interrupted while waiting for the ruleset " + file, e);
+        } catch (ExecutionException e) {
+            throw new PluginException("Cannot read the ruleset " + file + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void load(Key key, CompletableFuture<Prefs> future) {
+        long start = System.nanoTime();
+        try {
+            Prefs prefs = new Prefs();
+            prefs.loadPrefs(key.file().toString());
+            loadTimes.record(System.nanoTime() - start);
+            log.debug("Parsed ruleset {} in {} ms", key.file(), (System.nanoTime() - start) / 1_000_000);
+            future.complete(prefs);
+        } catch (PreferencesException | RuntimeException e) {
+            loadFailures.increment();
+            entries.remove(key);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Remove all cached rulesets
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    @Override
+    public double getMeanLoadMillis() {
+        return loadTimes.getMeanMillis();
+    }
+}
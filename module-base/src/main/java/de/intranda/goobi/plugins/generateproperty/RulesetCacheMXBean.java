@@ -0,0 +1,17 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+/**
+ * JMX view of the {@link RulesetCache}.
+ */
+public interface RulesetCacheMXBean {
+
+    int getSize();
+
+    long getHits();
+
+    long getMisses();
+
+    long getLoadFailures();
+
+    double getMeanLoadMillis();
+}
@@ -0,0 +1,87 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.goobi.production.enums.LogType;
+
+import de.sub.goobi.helper.Helper;
+
+/**
+ * Failed <code>{{...}}</code> paths of one step run. Errors are collected by path and exception type and written to the process journal as a
+ * single entry at the end of the run, instead of one entry per failure. All methods are thread-safe.
+ */
+public class SpecialReplacementErrors {
+    private final Map<Key, Entry> errors = new LinkedHashMap<>();
+
+    private record Key(String path, Class<?> type) {
+    }
+
+    private static final class Entry {
+        private final String message;
+        private int count;
+
+        private Entry(String message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * Record a failed path
+     *
+     * @param path the path without the curly brackets
+     * @param exception the reason of the failure
+     */
+    public synchronized void add(String path, Exception exception) {
+        errors.computeIfAbsent(new Key(path, exception.getClass()), key -> new Entry(exception.getMessage())).count++;
+    }
+
+    public synchronized boolean isEmpty() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * @return the number of failures by path and exception type, e.g. <code>{{schritte[5].titel}} (IndexOutOfBoundsException)</code>
+     */
+    public synchronized Map<String, Integer> getCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        errors.forEach((key, entry) -> counts.put(describe(key), entry.count));
+        return counts;
+    }
+
+    /**
+     * @return one line per distinct error, or an empty string if there were none
+     */
+    public synchronized String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        errors.forEach((key, entry) -> {
+            if (summary.length() > 0) {
+                summary.append('\n');
+            }
+            summary.append(describe(key)).append(": ").append(entry.message);
+            if (entry.count > 1) {
+                summary.append(" (").append(entry.count).append(" times)");
+            }
+        });
+        return summary.toString();
+    }
+
+    /**
+     * Write all collected errors as a single entry to the journal of the process. Nothing is written if there were no errors or if the process
+     * is not stored in the database, e.g. in offline tools.
+     *
+     * @param processId the id of the process
+     */
+    public void writeToJournal(Integer processId) {
+        if (isEmpty() || processId == null) {
+            return;
+        }
+        String message = "Errors during special replacement:\n" + getSummary();
+        Helper.setFehlerMeldung(message);
+        Helper.addMessageToProcessJournal(processId, LogType.ERROR, message);
+    }
+
+    private static String describe(Key key) {
+        return "{{" + key.path() + "}} (" + key.type().getSimpleName() + ")";
+    }
+}
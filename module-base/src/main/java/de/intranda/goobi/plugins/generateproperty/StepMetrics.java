@@ -0,0 +1,162 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+import javax.management.ObjectName;
+
+import org.goobi.beans.Step;
+
+import lombok.Getter;
+
+/**
+ * Latency histograms and counters of all step runs of one project and step title.
+ *
+ * Instances are created once per project and step and registered as MXBean under
+ * <code>de.intranda.goobi.plugins:type=GenerateProperty,project=...,step=...</code>. Recording only updates counters and does not allocate.
+ */
+public class StepMetrics implements StepMetricsMXBean {
+    private static final Map<Key, StepMetrics> INSTANCES = new ConcurrentHashMap<>();
+
+    @Getter
+    private final String project;
+    @Getter
+    private final String step;
+    private final EnumMap<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+    private final LongAdder propertiesGenerated = new LongAdder();
+    private final LongAdder unchangedSkipped = new LongAdder();
+    private final LongAdder guardSkipped = new LongAdder();
+    private final LongAdder specialReplacementFailures = new LongAdder();
+    private final LongAdder metadataBytesRead = new LongAdder();
+    private final LongAdder replacementTimeouts = new LongAdder();
+
+    private record Key(String project, String step) {
+    }
+
+    private StepMetrics(String project, String step) {
+        this.project = project;
+        this.step = step;
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Get the metrics for the project and title of the given step
+     *
+     * @param step the executed step
+     * @return the shared metrics instance
+     */
+    public static StepMetrics forStep(Step step) {
+        String project = step.getProzess() != null && step.getProzess().getProjekt() != null ? step.getProzess().getProjekt().getTitel() : "";
+        String title = step.getTitel() != null ? step.getTitel() : "";
+        return INSTANCES.computeIfAbsent(new Key(project, title), StepMetrics::register);
+    }
+
+    private static StepMetrics register(Key key) {
+        String name = "de.intranda.goobi.plugins:type=GenerateProperty,project=" + ObjectName.quote(key.project()) + ",step="
+                + ObjectName.quote(key.step());
+        return MBeans.register(new StepMetrics(key.project(), key.step()), name,
+                "the metrics of project '" + key.project() + "' and step '" + key.step() + "'");
+    }
+
+    public void record(Phase phase, long nanos) {
+        phases.get(phase).record(nanos);
+    }
+
+    public void addPropertiesGenerated(long count) {
+        propertiesGenerated.add(count);
+    }
+
+    public void addUnchangedSkipped(long count) {
+        unchangedSkipped.add(count);
+    }
+
+    public void addGuardSkipped(long count) {
+        guardSkipped.add(count);
+    }
+
+    public void incrementSpecialReplacementFailures() {
+        specialReplacementFailures.increment();
+    }
+
+    public void incrementReplacementTimeouts() {
+        replacementTimeouts.increment();
+    }
+
+    public void addMetadataBytesRead(long bytes) {
+        metadataBytesRead.add(bytes);
+    }
+
+    public LatencyHistogram getHistogram(Phase phase) {
+        return phases.get(phase);
+    }
+
+    @Override
+    public long getPropertiesGenerated() {
+        return propertiesGenerated.sum();
+    }
+
+    @Override
+    public long getUnchangedSkipped() {
+        return unchangedSkipped.sum();
+    }
+
+    @Override
+    public long getGuardSkipped() {
+        return guardSkipped.sum();
+    }
+
+    @Override
+    public long getSpecialReplacementFailures() {
+        return specialReplacementFailures.sum();
+    }
+
+    @Override
+    public long getReplacementTimeouts() {
+        return replacementTimeouts.sum();
+    }
+
+    @Override
+    public long getMetadataBytesRead() {
+        return metadataBytesRead.sum();
+    }
+
+    @Override
+    public Map<String, Long> getPhaseCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        phases.forEach((phase, histogram) -> result.put(phase.name(), histogram.getCount()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getPhaseMeanMillis() {
+        return collect(LatencyHistogram::getMeanMillis);
+    }
+
+    @Override
+    public Map<String, Double> getPhaseP99Millis() {
+        return collect(histogram -> histogram.getPercentileMillis(0.99));
+    }
+
+    @Override
+    public void reset() {
+        phases.values().forEach(LatencyHistogram::reset);
+        propertiesGenerated.reset();
+        unchangedSkipped.reset();
+        guardSkipped.reset();
+        specialReplacementFailures.reset();
+        replacementTimeouts.reset();
+        metadataBytesRead.reset();
+    }
+
+    private Map<String, Double> collect(ToDoubleFunction<LatencyHistogram> value) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        phases.forEach((phase, histogram) -> result.put(phase.name(), value.applyAsDouble(histogram)));
+        return result;
+    }
+}
@@ -0,0 +1,36 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link StepMetrics} of one project and step.
+ */
+public interface StepMetricsMXBean {
+
+    String getProject();
+
+    String getStep();
+
+    long getPropertiesGenerated();
+
+    long getUnchangedSkipped();
+
+    long getGuardSkipped();
+
+    long getSpecialReplacementFailures();
+
+    long getReplacementTimeouts();
+
+    long getMetadataBytesRead();
+
+    Map<String, Long> getPhaseCounts();
+
+    Map<String, Double> getPhaseMeanMillis();
+
+    Map<String, Double> getPhaseP99Millis();
+
+    /**
+     * Reset all counters and histograms, e.g. before measuring a changed configuration
+     */
+    void reset();
+}
@@ -0,0 +1,64 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+
+import de.sub.goobi.persistence.managers.StepManager;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Loads a single step of a process for paths like <code>schritte[0]</code> or <code>schritte[titel='Scan']</code>.
+ *
+ * The query is only used if the steps of the process were not loaded yet and all filters refer to indexed columns of the step table. Otherwise
+ * the already loaded list is used. The order is the same as in {@link Process#getSchritte()}. Like the filter on a loaded list, the query compares
+ * exactly: the collation of the step table ignores case and trailing spaces, so the columns are compared as binary strings. The values are passed
+ * as hexadecimal literals of their UTF-8 bytes and need no escaping.
+ */
+@Log4j2
+class StepQuery implements CollectionQuery {
+    private static final String ORDER = "schritte.Reihenfolge, schritte.SchritteID";
+    private static final Map<String, String> COLUMNS = Map.of("id", "schritte.SchritteID", "titel", "schritte.Titel", "reihenfolge",
+            "schritte.Reihenfolge", "bearbeitungsstatus", "schritte.Bearbeitungsstatus", "prioritaet", "schritte.Prioritaet");
+    private static final Field STEPS_FIELD = findStepsField();
+    private static final HexFormat HEX = HexFormat.of();
+
+    private static Field findStepsField() {
+        try {
+            Field field = Process.class.getDeclaredField("schritte");
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException | RuntimeException e) {
+            log.debug("Cannot access the steps of a process, step queries are disabled: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public Object select(Object receiver, List<CompiledPath.Predicate> predicates, int position) throws Exception {
+        if (!(receiver instanceof Process process) || process.getId() == null || STEPS_FIELD == null || isLoaded(process)) {
+            return NOT_APPLICABLE;
+        }
+        StringBuilder filter = new StringBuilder("schritte.ProzesseID = ").append(process.getId());
+        for (CompiledPath.Predicate predicate : predicates) {
+            String column = COLUMNS.get(predicate.property());
+            if (column == null) {
+                return NOT_APPLICABLE;
+            }
+            String value = HEX.formatHex(predicate.value().getBytes(StandardCharsets.UTF_8));
+            filter.append(" AND BINARY ").append(column).append(" = X'").append(value).append('\'');
+        }
+        List<Step> steps = StepManager.getSteps(ORDER, filter.toString(), position, 1, null);
+        return steps == null || steps.isEmpty() ? null : steps.get(0);
+    }
+
+    private static boolean isLoaded(Process process) throws IllegalAccessException {
+        // Process#getSchritte() loads the steps if the list is null or empty
+        return STEPS_FIELD.get(process) instanceof List<?> steps && !steps.isEmpty();
+    }
+}
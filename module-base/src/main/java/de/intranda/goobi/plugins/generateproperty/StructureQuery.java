@@ -0,0 +1,285 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.Getter;
+import ugh.dl.DigitalDocument;
+import ugh.dl.DocStruct;
+import ugh.dl.Metadata;
+
+/**
+ * An aggregation over the structure tree of the METS file, like <code>count(logical.**[type=Volume])</code>,
+ * <code>max(logical.**.meta.PublicationYear)</code> or <code>join(logical.*.meta.shelfmarksource, '; ')</code>.
+ *
+ * A path starts at <code>logical</code> or <code>physical</code>. <code>.*</code> selects the children, <code>.**</code> all descendants in
+ * depth-first order, and <code>[type=Name]</code> keeps only elements of the given structure type. The path ends with
+ * <code>.meta.Name</code> for the values of a metadata type, or selects the structure type names otherwise.
+ *
+ * The tree is walked lazily without copying any child list, so the extra memory only depends on the depth of the tree. <code>first</code> and
+ * <code>exists</code> stop at the first value. <code>min</code> and <code>max</code> compare two numbers numerically and everything else as text.
+ * <code>join</code> and <code>distinct</code> separate the values with <code>", "</code> or a separator given as second argument.
+ */
+public final class StructureQuery {
+    private static final Pattern SYNTAX = Pattern
+            .compile("(count|min|max|join|distinct|first|exists)\\(\\s*([^,()]+?)\\s*(?:,\\s*'((?:[^']|'')*)'\\s*)?\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern STEP = Pattern.compile("(\\*\\*|\\*|logical|physical)(?:\\[type=([^\\]]+)\\])?");
+    private static final String DEFAULT_SEPARATOR = ", ";
+    private static final LruCache<String, StructureQuery> CACHE = new LruCache<>(256);
+
+    public enum Function {
+        COUNT,
+        MIN,
+        MAX,
+        JOIN,
+        DISTINCT,
+        FIRST,
+        EXISTS
+    }
+
+    private enum Axis {
+        CHILDREN,
+        DESCENDANTS
+    }
+
+    private record Step(Axis axis, String type) {
+    }
+
+    @Getter
+    private final String expression;
+    @Getter
+    private final Function function;
+    private final boolean physical;
+    private final String rootType;
+    private final List<Step> steps;
+    private final String metadataType;
+    private final String separator;
+
+    private StructureQuery(String expression, Function function, boolean physical, String rootType, List<Step> steps, String metadataType,
+            String separator) {
+        this.expression = expression;
+        this.function = function;
+        this.physical = physical;
+        this.rootType = rootType;
+        this.steps = List.copyOf(steps);
+        this.metadataType = metadataType;
+        this.separator = separator;
+    }
+
+    /**
+     * Check if an expression is an aggregation over the structure tree instead of a path on the process
+     *
+     * @param expression the expression without the curly brackets
+     * @return true if the expression starts with an aggregation function
+     */
+    public static boolean isQuery(String expression) {
+        int bracket = expression.indexOf('(');
+        if (bracket <= 0) {
+            return false;
+        }
+        String name = expression.substring(0, bracket).trim();
+        for (Function function : Function.values()) {
+            if (function.name().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the compiled query for an expression from a bounded cache
+     *
+     * @param expression the expression without the curly brackets
+     * @return the compiled query
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public static StructureQuery compile(String expression) {
+        StructureQuery query = CACHE.get(expression);
+        if (query == null) {
+            query = parse(expression);
+            CACHE.put(expression, query);
+        }
+        return query;
+    }
+
+    private static StructureQuery parse(String expression) {
+        Matcher matcher = SYNTAX.matcher(expression.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid aggregation '" + expression + "'");
+        }
+        Function function = Function.valueOf(matcher.group(1).toUpperCase());
+        String separator = matcher.group(3) != null ? matcher.group(3).replace("''", "'") : DEFAULT_SEPARATOR;
+        String[] parts = matcher.group(2).split("\\.");
+        String metadataType = null;
+        int end = parts.length;
+        if (end >= 2 && "meta".equals(parts[end - 2])) {
+            metadataType = parts[end - 1];
+            end -= 2;
+        }
+        if (end == 0) {
+            throw new IllegalArgumentException("Missing root in aggregation '" + expression + "'");
+        }
+        Matcher root = STEP.matcher(parts[0]);
+        if (!root.matches() || root.group(1).startsWith("*")) {
+            throw new IllegalArgumentException("The path of '" + expression + "' must start with logical or physical");
+        }
+        List<Step> steps = new ArrayList<>();
+        for (int i = 1; i < end; i++) {
+            Matcher step = STEP.matcher(parts[i]);
+            if (!step.matches() || !step.group(1).startsWith("*")) {
+                throw new IllegalArgumentException("Invalid step '" + parts[i] + "' in aggregation '" + expression + "'");
+            }
+            steps.add(new Step("**".equals(step.group(1)) ? Axis.DESCENDANTS : Axis.CHILDREN, step.group(2)));
+        }
+        return new StructureQuery(expression, function, "physical".equals(root.group(1)), root.group(2), steps, metadataType, separator);
+    }
+
+    /**
+     * Evaluate the aggregation
+     *
+     * @param document the digital document of the process
+     * @return the aggregated value, an empty string if no value was found, except for <code>count</code> and <code>exists</code>
+     */
+    public String evaluate(DigitalDocument document) {
+        Aggregator aggregator = new Aggregator();
+        DocStruct root = physical ? document.getPhysicalDocStruct() : document.getLogicalDocStruct();
+        if (root != null && matchesType(root, rootType)) {
+            walk(root, 0, aggregator);
+        }
+        return aggregator.result();
+    }
+
+    /**
+     * Apply the steps from the given index to an element and pass the selected values to the aggregator
+     *
+     * @return false if the aggregator needs no further values
+     */
+    private boolean walk(DocStruct element, int stepIndex, Aggregator aggregator) {
+        if (stepIndex == steps.size()) {
+            return emit(element, aggregator);
+        }
+        Step step = steps.get(stepIndex);
+        List<DocStruct> children = element.getAllChildren();
+        if (children == null) {
+            return true;
+        }
+        for (DocStruct child : children) {
+            if (matchesType(child, step.type()) && !walk(child, stepIndex + 1, aggregator)) {
+                return false;
+            }
+            if (step.axis() == Axis.DESCENDANTS && !walk(child, stepIndex, aggregator)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean emit(DocStruct element, Aggregator aggregator) {
+        if (metadataType == null) {
+            return aggregator.accept(element.getType() != null ? element.getType().getName() : "");
+        }
+        List<Metadata> metadata = element.getAllMetadata();
+        if (metadata == null) {
+            return true;
+        }
+        for (Metadata md : metadata) {
+            if (md.getType() != null && metadataType.equals(md.getType().getName()) && !aggregator.accept(md.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesType(DocStruct element, String type) {
+        return type == null || element.getType() != null && type.equals(element.getType().getName());
+    }
+
+    /**
+     * Collects the values of one evaluation
+     */
+    private final class Aggregator {
+        private long count;
+        private String best;
+        private StringBuilder joined;
+        private Set<String> distinct;
+
+        /**
+         * @return false if no further values are needed
+         */
+        private boolean accept(String value) {
+            if (value == null) {
+                return true;
+            }
+            count++;
+            switch (function) {
+                case MIN:
+                    if (best == null || compare(value, best) < 0) {
+                        best = value;
+                    }
+                    return true;
+                case MAX:
+                    if (best == null || compare(value, best) > 0) {
+                        best = value;
+                    }
+                    return true;
+                case JOIN:
+                    if (joined == null) {
+                        joined = new StringBuilder(value);
+                    } else {
+                        joined.append(separator).append(value);
+                    }
+                    return true;
+                case DISTINCT:
+                    if (distinct == null) {
+                        distinct = new LinkedHashSet<>();
+                    }
+                    distinct.add(value);
+                    return true;
+                case FIRST:
+                    best = value;
+                    return false;
+                case EXISTS:
+                    return false;
+                default:
+                    return true;
+            }
+        }
+
+        private String result() {
+            switch (function) {
+                case COUNT:
+                    return String.valueOf(count);
+                case EXISTS:
+                    return String.valueOf(count > 0);
+                case JOIN:
+                    return joined != null ? joined.toString() : "";
+                case DISTINCT:
+                    return distinct != null ? String.join(separator, distinct) : "";
+                default:
+                    return best != null ? best : "";
+            }
+        }
+    }
+
+    private static int compare(String first, String second) {
+        BigDecimal firstNumber = toNumber(first);
+        BigDecimal secondNumber = toNumber(second);
+        if (firstNumber != null && secondNumber != null) {
+            return firstNumber.compareTo(secondNumber);
+        }
+        return first.compareTo(second);
+    }
+
+    private static BigDecimal toNumber(String value) {
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
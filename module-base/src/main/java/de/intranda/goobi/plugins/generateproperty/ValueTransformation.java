@@ -0,0 +1,22 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import org.apache.commons.digester.plugins.PluginException;
+
+/**
+ * A step that is applied to the value of a property after all expressions were resolved, e.g. a <code>replace</code> or a <code>map</code>
+ * element.
+ */
+public interface ValueTransformation {
+
+    /**
+     * @param value the current value of the property
+     * @return the transformed value
+     * @throws PluginException if the transformation could not be finished, e.g. because it ran out of time
+     */
+    String apply(String value) throws PluginException;
+
+    /**
+     * @return a string that changes whenever the behavior of this transformation changes
+     */
+    String getSignature();
+}
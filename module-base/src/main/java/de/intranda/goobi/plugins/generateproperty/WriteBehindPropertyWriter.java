@@ -0,0 +1,76 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.goobi.beans.GoobiProperty;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * {@link PropertyWriter} that hands the changes over to the {@link WriteBehindQueue}.
+ *
+ * With the durability {@link Durability#CLOSE}, {@link #write(PropertyChangeSet)} returns only after the changes were flushed, so the step is
+ * closed with its properties stored, while the database still sees one writer instead of one per step run. With {@link Durability#NONE}, the
+ * step continues immediately and a failed write is only logged.
+ */
+@Log4j2
+public class WriteBehindPropertyWriter implements PropertyWriter {
+
+    public enum Durability {
+        /**
+         * wait until the changes are written before the step is closed
+         */
+        CLOSE,
+        /**
+         * don't wait for the changes to be written
+         */
+        NONE
+    }
+
+    private final WriteBehindQueue queue;
+    @Getter
+    private final Durability durability;
+    private final int queueSize;
+    private final int batchSize;
+    private final long flushInterval;
+
+    public WriteBehindPropertyWriter(PluginConfiguration configuration) {
+        this(WriteBehindQueue.getInstance(), configuration.getWriteBehindDurability(), configuration.getWriteBehindQueueSize(),
+                configuration.getWriteBehindBatchSize(), configuration.getWriteBehindInterval());
+    }
+
+    WriteBehindPropertyWriter(WriteBehindQueue queue, Durability durability, int queueSize, int batchSize, long flushInterval) {
+        this.queue = queue;
+        this.durability = durability;
+        this.queueSize = queueSize;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public void write(PropertyChangeSet changes) {
+        if (changes.isEmpty()) {
+            log.debug("No changed properties for process {}", changes.getProcess().getId());
+            return;
+        }
+        CompletableFuture<Void> written;
+        try {
+            written = queue.submit(changes, queueSize, batchSize, flushInterval);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-behind queue", e);
+        }
+        for (GoobiProperty property : changes.getDeletions()) {
+            changes.getProcess().getProperties().remove(property);
+        }
+        if (durability == Durability.CLOSE) {
+            try {
+                written.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.goobi.beans.GoobiProperty;
+
+import de.sub.goobi.persistence.managers.PropertyManager;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Server wide write-behind queue for changed properties.
+ *
+ * Submitted changes are coalesced per process and property name, so if a property is changed again before it was written, only the last value
+ * reaches the database. A single writer thread takes the oldest entries from the queue as soon as {@link #getBatchSize() batchSize} entries
+ * are waiting or the oldest entry waited for {@link #getFlushInterval() flushInterval} milliseconds. The queue holds at most
+ * {@link #getQueueSize() queueSize} entries, further submissions wait for the writer. As with the {@link AsyncGenerationExecutor}, the limits
+ * are taken from the last submission. If the writer thread is interrupted, the waiting changes fail and the next submission starts a new writer.
+ * The queue is registered as MXBean under
+ * <code>de.intranda.goobi.plugins:type=GenerateProperty,name=WriteBehind</code>.
+ */
+@Log4j2
+public class WriteBehindQueue implements WriteBehindQueueMXBean {
+    private static final WriteBehindQueue INSTANCE = MBeans.register(
+            new WriteBehindQueue(PropertyManager::saveProperty, PropertyManager::deleteProperty),
+            "de.intranda.goobi.plugins:type=GenerateProperty,name=WriteBehind", "the write-behind queue");
+
+    private final Consumer<GoobiProperty> saver;
+    private final Consumer<GoobiProperty> deleter;
+    private final Map<Key, Pending> pending = new LinkedHashMap<>();
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private int queueSize = 1000;
+    private int batchSize = 100;
+    private long flushInterval = 200;
+    private Thread writer;
+
+    private record Key(Integer processId, String propertyName) {
+    }
+
+    /**
+     * The latest changes of one property of one process
+     */
+    private static final class Pending {
+        private final Key key;
+        private final long created = System.nanoTime();
+        private List<GoobiProperty> saves = List.of();
+        private final List<GoobiProperty> deletions = new ArrayList<>();
+        private final List<CompletableFuture<Void>> waiting = new ArrayList<>(1);
+
+        private Pending(Key key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * @param saver stores a new or changed property
+     * @param deleter deletes a property
+     */
+    WriteBehindQueue(Consumer<GoobiProperty> saver, Consumer<GoobiProperty> deleter) {
+        this.saver = saver;
+        this.deleter = deleter;
+    }
+
+    public static WriteBehindQueue getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Put the changes of a process on the queue. Deleted properties are not removed from the property list of the process, this is left to the
+     * caller.
+     *
+     * @param changes the changed properties of one process
+     * @param queueSize maximum number of waiting entries
+     * @param batchSize number of waiting entries that triggers a flush
+     * @param flushInterval maximum time in milliseconds an entry waits for a flush
+     * @return completes when all changes were written, or exceptionally if one of them could not be written
+     * @throws InterruptedException if the caller was interrupted while waiting for space in the queue
+     */
+    public CompletableFuture<Void> submit(PropertyChangeSet changes, int queueSize, int batchSize, long flushInterval) throws InterruptedException {
+        if (changes.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Map<String, List<GoobiProperty>> saves = groupByName(changes.getChanges());
+        Map<String, List<GoobiProperty>> deletions = groupByName(changes.getDeletions());
+        Set<String> names = new LinkedHashSet<>(saves.keySet());
+        names.addAll(deletions.keySet());
+        Integer processId = changes.getProcess().getId();
+        List<CompletableFuture<Void>> parts = new ArrayList<>(names.size());
+        synchronized (pending) {
+            this.queueSize = Math.max(queueSize, 1);
+            this.batchSize = Math.max(batchSize, 1);
+            this.flushInterval = Math.max(flushInterval, 0);
+            // a change set that is larger than the whole queue is accepted as soon as the queue is empty
+            while (!pending.isEmpty() && pending.size() + countNewKeys(processId, names) > this.queueSize) {
+                startWriter();
+                pending.wait();
+            }
+            for (String name : names) {
+                Pending entry = pending.computeIfAbsent(new Key(processId, name), Pending::new);
+                List<GoobiProperty> newSaves = saves.get(name);
+                if (newSaves != null) {
+                    coalesced.add(entry.saves.size());
+                    entry.saves = newSaves;
+                }
+                entry.deletions.addAll(deletions.getOrDefault(name, List.of()));
+                CompletableFuture<Void> part = new CompletableFuture<>();
+                entry.waiting.add(part);
+                parts.add(part);
+            }
+            startWriter();
+            pending.notifyAll();
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture[parts.size()]));
+    }
+
+    /**
+     * Start the writer thread if it is not running, e.g. on the first submission or after it was stopped. Must be called with the lock held.
+     */
+    private void startWriter() {
+        if (writer == null || !writer.isAlive()) {
+            writer = Thread.ofPlatform().name("generate-property-write-behind").daemon().start(this::runWriter);
+        }
+    }
+
+    private int countNewKeys(Integer processId, Set<String> names) {
+        int count = 0;
+        for (String name : names) {
+            if (!pending.containsKey(new Key(processId, name))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Map<String, List<GoobiProperty>> groupByName(List<GoobiProperty> properties) {
+        Map<String, List<GoobiProperty>> grouped = new LinkedHashMap<>();
+        for (GoobiProperty property : properties) {
+            grouped.computeIfAbsent(property.getPropertyName(), name -> new ArrayList<>(1)).add(property);
+        }
+        return grouped;
+    }
+
+    private void runWriter() {
+        try {
+            while (true) {
+                flush(takeBatch());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopWriter();
+        }
+    }
+
+    /**
+     * Called when the writer thread ends. The waiting entries can't be written anymore, so their callers get an exception instead of waiting
+     * forever. The next submission starts a new writer.
+     */
+    private void stopWriter() {
+        List<Pending> dropped;
+        synchronized (pending) {
+            if (writer != Thread.currentThread()) {
+                // a new writer was already started and takes over the waiting entries
+                return;
+            }
+            writer = null;
+            dropped = new ArrayList<>(pending.values());
+            pending.clear();
+            // wake up submissions that wait for space
+            pending.notifyAll();
+        }
+        if (!dropped.isEmpty()) {
+            log.warn("The write-behind writer was stopped with {} waiting properties", dropped.size());
+            IllegalStateException exception = new IllegalStateException("The write-behind writer was stopped");
+            for (Pending entry : dropped) {
+                failed.increment();
+                entry.waiting.forEach(future -> future.completeExceptionally(exception));
+            }
+        }
+    }
+
+    /**
+     * Wait until a flush is due and remove the oldest entries from the queue
+     */
+    private List<Pending> takeBatch() throws InterruptedException {
+        synchronized (pending) {
+            while (true) {
+                if (pending.size() >= batchSize) {
+                    break;
+                }
+                if (pending.isEmpty()) {
+                    pending.wait();
+                    continue;
+                }
+                long age = System.nanoTime() - pending.values().iterator().next().created;
+                long remaining = TimeUnit.MILLISECONDS.toNanos(flushInterval) - age;
+                if (remaining <= 0) {
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(pending, remaining);
+            }
+            List<Pending> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+            Iterator<Pending> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            // wake up submissions that wait for space
+            pending.notifyAll();
+            return batch;
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        long start = System.nanoTime();
+        for (Pending entry : batch) {
+            try {
+                for (GoobiProperty property : entry.saves) {
+                    saver.accept(property);
+                    written.increment();
+                }
+                for (GoobiProperty property : entry.deletions) {
+                    deleter.accept(property);
+                }
+                entry.waiting.forEach(future -> future.complete(null));
+            } catch (Throwable e) {
+                // an Error must not end the writer, the entries behind it still have to be written
+                failed.increment();
+                log.error("Cannot write property '{}' of process {}: {}", entry.key.propertyName(), entry.key.processId(), e.getMessage(), e);
+                entry.waiting.forEach(future -> future.completeExceptionally(e));
+            }
+        }
+        flushLatency.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public int getQueueSize() {
+        synchronized (pending) {
+            return queueSize;
+        }
+    }
+
+    @Override
+    public int getBatchSize() {
+        synchronized (pending) {
+            return batchSize;
+        }
+    }
+
+    @Override
+    public long getFlushInterval() {
+        synchronized (pending) {
+            return flushInterval;
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    @Override
+    public long getWritten() {
+        return written.sum();
+    }
+
+    @Override
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    @Override
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public long getFlushes() {
+        return flushLatency.getCount();
+    }
+
+    @Override
+    public double getFlushMeanMillis() {
+        return flushLatency.getMeanMillis();
+    }
+
+    @Override
+    public double getFlushP99Millis() {
+        return flushLatency.getPercentileMillis(0.99);
+    }
+}
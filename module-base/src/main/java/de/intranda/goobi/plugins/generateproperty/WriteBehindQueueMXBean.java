@@ -0,0 +1,27 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+/**
+ * JMX view of the {@link WriteBehindQueue} of this Goobi server.
+ */
+public interface WriteBehindQueueMXBean {
+
+    int getQueueSize();
+
+    int getBatchSize();
+
+    long getFlushInterval();
+
+    int getQueueDepth();
+
+    long getWritten();
+
+    long getCoalesced();
+
+    long getFailed();
+
+    long getFlushes();
+
+    double getFlushMeanMillis();
+
+    double getFlushP99Millis();
+}
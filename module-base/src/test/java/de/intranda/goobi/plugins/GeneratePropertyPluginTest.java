@@ -2,6 +2,7 @@ package de.intranda.goobi.plugins;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -246,6 +247,12 @@ public class GeneratePropertyPluginTest {
         PowerMock.expectLastCall().once();
     }
 
+    private void setupNoMetadataFileAccess() {
+        // any call to the MetadatenHelper means that the meta.xml is being read
+        PowerMock.mockStatic(MetadatenHelper.class);
+        PowerMock.replay(MetadatenHelper.class);
+    }
+
     private void verifyPropertyCreation(String name, String value) {
         GoobiProperty property = propertyCaptor.getValue();
         assertEquals(name, property.getPropertyName());
@@ -322,4 +329,55 @@ public class GeneratePropertyPluginTest {
         PowerMock.verify(PropertyManager.class);
         verifyPropertyCreation("User Location", "Office");
     }
+
+    @Test
+    public void staticProperty_expectNoMetadataFileAccess() throws ConfigurationException, IOException {
+        setupPluginConfiguration("static-with-replacement");
+        setupNoMetadataFileAccess();
+        initializate();
+        setupPropertyCreation();
+        PowerMock.replay(PropertyManager.class);
+        setupVariableReplacerEcho();
+
+        assertEquals(PluginReturnValue.FINISH, plugin.run());
+
+        PowerMock.verify(PropertyManager.class);
+        PowerMock.verify(MetadatenHelper.class);
+        assertFalse(plugin.getMetadata().isLoaded());
+        verifyPropertyCreation("Static Text", "This is static");
+    }
+
+    @Test
+    public void specialUserLocation_expectNoMetadataFileAccess() throws ConfigurationException, IOException {
+        setupPluginConfiguration("user-location");
+        setupNoMetadataFileAccess();
+        initializate();
+        setupPropertyCreation();
+        PowerMock.replay(PropertyManager.class);
+        setupVariableReplacerEcho();
+
+        assertEquals(PluginReturnValue.FINISH, plugin.run());
+
+        PowerMock.verify(MetadatenHelper.class);
+        assertFalse(plugin.getMetadata().isLoaded());
+        verifyPropertyCreation("User Location", "Office");
+    }
+
+    @Test
+    public void unchangedProperty_expectNoDatabaseWrite() throws ConfigurationException, IOException {
+        setupPluginConfiguration("static");
+        GoobiProperty existing = new GoobiProperty(GoobiProperty.PropertyOwnerType.PROCESS);
+        existing.setOwner(process);
+        existing.setPropertyName("Static Text");
+        existing.setPropertyValue("This is static");
+        process.setProperties(new ArrayList<>(List.of(existing)));
+        initializate();
+        // no call of PropertyManager.saveProperty is expected
+        PowerMock.replay(PropertyManager.class);
+        setupVariableReplacerEcho();
+
+        assertEquals(PluginReturnValue.FINISH, plugin.run());
+
+        PowerMock.verify(PropertyManager.class);
+    }
 }
@@ -0,0 +1,65 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AsyncGenerationExecutorTest {
+
+    @Test
+    public void fullQueue_expectRejection() throws InterruptedException {
+        AsyncGenerationExecutor executor = new AsyncGenerationExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        assertTrue(executor.submit(blocked, 1, 1));
+        assertTrue(executor.submit(blocked, 1, 1));
+        assertFalse(executor.submit(blocked, 1, 1));
+        assertEquals(1, executor.getRunning());
+        assertEquals(1, executor.getQueueDepth());
+        assertEquals(1, executor.getRejected());
+        release.countDown();
+        waitForCompletion(executor, 2);
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+    @Test
+    public void manyTasks_expectConcurrencyLimit() throws InterruptedException {
+        AsyncGenerationExecutor executor = new AsyncGenerationExecutor();
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maximum = new AtomicInteger();
+        for (int i = 0; i < 50; i++) {
+            assertTrue(executor.submit(() -> {
+                maximum.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                active.decrementAndGet();
+            }, 3, 50));
+        }
+        waitForCompletion(executor, 50);
+        assertTrue(maximum.get() <= 3);
+        assertEquals(0, executor.getRunning());
+    }
+
+    private void waitForCompletion(AsyncGenerationExecutor executor, long tasks) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (executor.getCompleted() < tasks || executor.getRunning() > 0) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BulkCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path checkpointFile() {
+        return folder.getRoot().toPath().resolve("checkpoint");
+    }
+
+    @Test
+    public void missingFile_expectStartFromBeginning() throws Exception {
+        BulkCheckpoint checkpoint = new BulkCheckpoint(checkpointFile());
+        assertEquals(0, checkpoint.getPosition());
+        assertFalse(checkpoint.isFinished(0));
+    }
+
+    @Test
+    public void outOfOrderCompletion_expectPositionOnlyAfterGapIsClosed() throws Exception {
+        BulkCheckpoint checkpoint = new BulkCheckpoint(checkpointFile());
+        checkpoint.markFinished(1);
+        checkpoint.markFinished(2);
+        assertEquals(0, checkpoint.getPosition());
+        checkpoint.markFinished(0);
+        assertEquals(3, checkpoint.getPosition());
+        checkpoint.markFinished(5);
+        assertEquals(3, checkpoint.getPosition());
+    }
+
+    @Test
+    public void saveAndResume_expectPositionAndFailuresRestored() throws Exception {
+        BulkCheckpoint checkpoint = new BulkCheckpoint(checkpointFile());
+        checkpoint.markFinished(0);
+        checkpoint.markFailed(1);
+        checkpoint.markFinished(2);
+        // the gap at position 3 keeps position 4 from being stored
+        checkpoint.markFinished(4);
+        checkpoint.save();
+
+        BulkCheckpoint resumed = new BulkCheckpoint(checkpointFile());
+        assertEquals(3, resumed.getPosition());
+        assertEquals(List.of(1L), resumed.getFailed());
+        assertTrue(resumed.isFinished(0));
+        assertFalse(resumed.isFinished(1));
+        assertTrue(resumed.isFinished(2));
+        assertFalse(resumed.isFinished(3));
+        assertFalse(resumed.isFinished(4));
+    }
+
+    @Test
+    public void failedPositionRetriedSuccessfully_expectFailureRemoved() throws Exception {
+        BulkCheckpoint checkpoint = new BulkCheckpoint(checkpointFile());
+        checkpoint.markFailed(0);
+        checkpoint.markFinished(1);
+        checkpoint.save();
+
+        BulkCheckpoint resumed = new BulkCheckpoint(checkpointFile());
+        assertEquals(List.of(0L), resumed.getFailed());
+        resumed.markFinished(0);
+        resumed.save();
+
+        BulkCheckpoint finished = new BulkCheckpoint(checkpointFile());
+        assertEquals(2, finished.getPosition());
+        assertEquals(List.of(), finished.getFailed());
+        assertTrue(finished.isFinished(0));
+    }
+}
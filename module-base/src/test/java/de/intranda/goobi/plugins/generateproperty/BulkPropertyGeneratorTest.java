@@ -0,0 +1,93 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.goobi.beans.Process;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BulkPropertyGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Integer> evaluated = new CopyOnWriteArrayList<>();
+    private final List<Integer> written = new CopyOnWriteArrayList<>();
+
+    private PropertyChangeSet evaluate(Integer processId, Integer failingId) {
+        evaluated.add(processId);
+        if (processId.equals(failingId)) {
+            throw new IllegalArgumentException("Process " + processId + " does not exist");
+        }
+        Process process = new Process();
+        process.setId(processId);
+        process.setProperties(new ArrayList<>());
+        PropertyChangeSet changes = new PropertyChangeSet(process);
+        changes.set("Archive Folder", "folder " + processId);
+        return changes;
+    }
+
+    private BulkPropertyGenerator generator(Integer failingId, Path checkpointFile) {
+        BulkPropertyGenerator generator = new BulkPropertyGenerator(processId -> evaluate(processId, failingId));
+        generator.setConcurrency(2);
+        generator.setBatchSize(2);
+        generator.setCheckpointFile(checkpointFile);
+        generator.setPropertyWriter(changes -> written.add(changes.getProcess().getId()));
+        return generator;
+    }
+
+    private static List<Integer> sorted(List<Integer> ids) {
+        List<Integer> copy = new ArrayList<>(ids);
+        copy.sort(null);
+        return copy;
+    }
+
+    @Test(timeout = 10_000)
+    public void oneFailingProcess_expectOthersWrittenAndFailureRetriedOnResume() throws Exception {
+        Path checkpointFile = folder.getRoot().toPath().resolve("checkpoint");
+        BulkProgress progress = generator(3, checkpointFile).run(Stream.of(1, 2, 3, 4, 5));
+        assertEquals(5, progress.getProcessed());
+        assertEquals(1, progress.getFailed());
+        assertEquals(4, progress.getWrittenProperties());
+        assertEquals(List.of(1, 2, 4, 5), sorted(written));
+        BulkCheckpoint checkpoint = new BulkCheckpoint(checkpointFile);
+        assertEquals(5, checkpoint.getPosition());
+        assertEquals(List.of(2L), checkpoint.getFailed());
+
+        // the second run only evaluates the failed process again
+        evaluated.clear();
+        written.clear();
+        progress = generator(null, checkpointFile).run(Stream.of(1, 2, 3, 4, 5));
+        assertEquals(List.of(3), evaluated);
+        assertEquals(List.of(3), written);
+        assertEquals(0, progress.getFailed());
+        assertEquals(List.of(), new BulkCheckpoint(checkpointFile).getFailed());
+    }
+
+    @Test(timeout = 10_000)
+    public void writerError_expectRunAbortedWithoutDeadlock() throws Exception {
+        BulkPropertyGenerator generator = generator(null, null);
+        generator.setPropertyWriter(changes -> {
+            throw new AssertionError("writer broken");
+        });
+        try {
+            generator.run(IntStream.rangeClosed(1, 1000).boxed());
+            fail("the run was not aborted");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+        // the producers were cancelled instead of evaluating the whole input
+        assertTrue(evaluated.size() < 1000);
+        assertEquals(List.of(), written);
+    }
+}
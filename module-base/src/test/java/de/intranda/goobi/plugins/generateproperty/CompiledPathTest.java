@@ -0,0 +1,127 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+import org.goobi.beans.User;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompiledPathTest {
+
+    private Process process;
+
+    @Before
+    public void setUp() {
+        process = new Process();
+        process.setTitel("00469418X");
+        Step step = new Step();
+        step.setTitel("test step");
+        User user = new User();
+        user.setStandort("Office");
+        step.setBearbeitungsbenutzer(user);
+        List<Step> steps = new ArrayList<>();
+        steps.add(step);
+        process.setSchritte(steps);
+    }
+
+    @Test
+    public void indexedPath_expectValue() throws Exception {
+        CompiledPath path = CompiledPath.compile("schritte[0].bearbeitungsbenutzer.standort");
+        assertEquals("Office", path.evaluateToString(process));
+        // second evaluation uses the inline caches
+        assertEquals("Office", path.evaluateToString(process));
+    }
+
+    @Test
+    public void subclassReceiver_expectValue() throws Exception {
+        User subclassed = new User() {
+        };
+        subclassed.setStandort("Archive");
+        process.getSchritte().get(0).setBearbeitungsbenutzer(subclassed);
+        CompiledPath path = ReflectionPathParser.compile("schritte[0].bearbeitungsbenutzer.standort");
+        assertEquals("Archive", path.evaluateToString(process));
+    }
+
+    @Test
+    public void nullIntermediate_expectNull() throws Exception {
+        process.getSchritte().get(0).setBearbeitungsbenutzer(null);
+        assertNull(ReflectionPathParser.parse(process, "schritte[0].bearbeitungsbenutzer.standort"));
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void unknownProperty_expectNoSuchMethodException() throws Exception {
+        ReflectionPathParser.parse(process, "schritte[0].bearbeitungsbenutzr.standort");
+    }
+
+    @Test
+    public void jdkImplementationClass_expectGetterOfPublicInterface() throws Exception {
+        // Map.entry returns an instance of a package private class of java.base that cannot be made accessible
+        assertEquals("Office", ReflectionPathParser.parse(Map.entry("Scan", "Office"), "value"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void indexOnScalar_expectIllegalArgumentException() throws Exception {
+        ReflectionPathParser.parse(process, "titel[0]");
+    }
+
+    @Test
+    public void filteredPath_expectMatchingElement() throws Exception {
+        Step scan = new Step();
+        scan.setTitel("Scan 1.0");
+        User user = new User();
+        user.setStandort("Scan Center");
+        scan.setBearbeitungsbenutzer(user);
+        process.getSchritte().add(scan);
+        assertEquals("Scan Center", ReflectionPathParser.parse(process, "schritte[titel='Scan 1.0'].bearbeitungsbenutzer.standort"));
+        assertEquals("Office", ReflectionPathParser.parse(process, "schritte[titel='test step'][0].bearbeitungsbenutzer.standort"));
+    }
+
+    @Test
+    public void filteredPathWithoutMatch_expectNull() throws Exception {
+        assertNull(ReflectionPathParser.parse(process, "schritte[titel='Scan'].bearbeitungsbenutzer.standort"));
+        assertNull(ReflectionPathParser.parse(process, "schritte[titel='test step'][1].bearbeitungsbenutzer.standort"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unclosedFilter_expectIllegalArgumentException() {
+        CompiledPath.compile("schritte[titel='Scan].titel");
+    }
+
+    @Test
+    public void boundPath_expectValueWithListElementType() throws Exception {
+        User subclassed = new User() {
+        };
+        subclassed.setStandort("Archive");
+        process.getSchritte().get(0).setBearbeitungsbenutzer(subclassed);
+        CompiledPath path = ReflectionPathParser.compile(Process.class, "schritte[titel='test step'].bearbeitungsbenutzer.standort");
+        assertEquals("Archive", path.evaluateToString(process));
+    }
+
+    @Test
+    public void boundPathWithTypo_expectIllegalArgumentException() {
+        try {
+            CompiledPath.compile("schritte[0].bearbeitungsbenutzr.standort").bind(Process.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown property bearbeitungsbenutzr of Step in reflection path schritte[0].bearbeitungsbenutzr.standort", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void boundFilterWithTypo_expectIllegalArgumentException() {
+        CompiledPath.compile("schritte[titl='Scan'].titel").bind(Process.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void boundIndexOnScalar_expectIllegalArgumentException() {
+        CompiledPath.compile("titel[0]").bind(Process.class);
+    }
+}
@@ -0,0 +1,64 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.digester.plugins.PluginException;
+import org.junit.Test;
+
+import ugh.dl.Fileformat;
+
+public class FileformatCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private FileformatCache.Loader loader() {
+        return () -> {
+            loads.incrementAndGet();
+            return mock(Fileformat.class);
+        };
+    }
+
+    @Test
+    public void unchangedFile_expectCachedInstance() throws PluginException {
+        FileformatCache cache = new FileformatCache();
+        Fileformat first = cache.get(1, "100:10/-", 10, 1000, loader());
+        assertSame(first, cache.get(1, "100:10/-", 10, 1000, loader()));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void changedFile_expectReload() throws PluginException {
+        FileformatCache cache = new FileformatCache();
+        cache.get(1, "100:10/-", 10, 1000, loader());
+        cache.get(1, "200:12/-", 12, 1000, loader());
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getStaleEntries());
+        assertEquals(12 * FileformatCache.BYTES_PER_FILE_BYTE, cache.getEstimatedBytes());
+    }
+
+    @Test
+    public void exceededBudget_expectLeastRecentlyUsedEvicted() throws PluginException {
+        FileformatCache cache = new FileformatCache();
+        long budget = 25 * FileformatCache.BYTES_PER_FILE_BYTE;
+        cache.get(1, "a", 10, budget, loader());
+        cache.get(2, "b", 10, budget, loader());
+        cache.get(1, "a", 10, budget, loader());
+        cache.get(3, "c", 10, budget, loader());
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        cache.get(1, "a", 10, budget, loader());
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void fileLargerThanBudget_expectNotCached() throws PluginException {
+        FileformatCache cache = new FileformatCache();
+        cache.get(1, "a", 1000, 10, loader());
+        assertEquals(0, cache.getSize());
+    }
+}
@@ -0,0 +1,25 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+public class FingerprintsTest {
+
+    @Test
+    public void sameValues_expectSameFingerprint() {
+        assertEquals(new Fingerprints().add("a").add(1).finish(), new Fingerprints().add("a").add(1).finish());
+        assertEquals(32, new Fingerprints().add("a").finish().length());
+    }
+
+    @Test
+    public void shiftedBoundary_expectDifferentFingerprint() {
+        assertNotEquals(new Fingerprints().add("ab").add("c").finish(), new Fingerprints().add("a").add("bc").finish());
+    }
+
+    @Test
+    public void nullAndEmptyValue_expectDifferentFingerprint() {
+        assertNotEquals(new Fingerprints().add((String) null).finish(), new Fingerprints().add("").finish());
+    }
+}
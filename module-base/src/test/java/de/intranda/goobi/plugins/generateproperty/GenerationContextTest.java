@@ -0,0 +1,72 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.sub.goobi.helper.VariableReplacer;
+
+public class GenerationContextTest {
+
+    private ProcessMetadata metadata;
+    private VariableReplacer replacer;
+    private VariableReplacer plainReplacer;
+    private GenerationContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        metadata = mock(ProcessMetadata.class);
+        replacer = mock(VariableReplacer.class);
+        plainReplacer = mock(VariableReplacer.class);
+        when(metadata.getVariableReplacer(anyString())).thenReturn(replacer);
+        when(metadata.getPlainVariableReplacer()).thenReturn(plainReplacer);
+        Step step = new Step();
+        step.setTitel("Generate properties");
+        context = new GenerationContext(new Process(), step, metadata);
+    }
+
+    @Test
+    public void nestedAndParenthesisedTokens_expectWholeValuePassedToReplacer() throws Exception {
+        // forms a token wise replacement would cut apart
+        String value = "{meta.{process.Name}}_$(meta.Title)_(processtitle)";
+        when(replacer.replace(value)).thenReturn("replaced");
+        assertEquals("replaced", context.replaceVariables(value));
+        verify(replacer).replace(value);
+    }
+
+    @Test
+    public void sameValueTwice_expectSingleReplacement() throws Exception {
+        when(replacer.replace("{processtitle}_{meta.CatalogIDDigital}")).thenReturn("title_123");
+        assertEquals("title_123", context.replaceVariables("{processtitle}_{meta.CatalogIDDigital}"));
+        assertEquals("title_123", context.replaceVariables("{processtitle}_{meta.CatalogIDDigital}"));
+        verify(replacer, times(1)).replace("{processtitle}_{meta.CatalogIDDigital}");
+    }
+
+    @Test
+    public void metadataValueWithoutMetadata_expectPlainReplacerAndNoMemoization() throws Exception {
+        when(plainReplacer.replace("{meta.CatalogIDDigital}")).thenReturn("");
+        when(replacer.replace("{meta.CatalogIDDigital}")).thenReturn("123");
+        assertEquals("", context.replaceVariablesWithoutMetadata("{meta.CatalogIDDigital}"));
+        // the value without metadata must not be returned to the generation
+        assertEquals("123", context.replaceVariables("{meta.CatalogIDDigital}"));
+        // now the complete value is memoized and used for the fingerprint as well
+        assertEquals("123", context.replaceVariablesWithoutMetadata("{meta.CatalogIDDigital}"));
+        verify(plainReplacer, times(1)).replace("{meta.CatalogIDDigital}");
+    }
+
+    @Test
+    public void valueWithoutMetadata_expectMemoizedForBothMethods() throws Exception {
+        when(replacer.replace("{processtitle}")).thenReturn("title");
+        assertEquals("title", context.replaceVariablesWithoutMetadata("{processtitle}"));
+        assertEquals("title", context.replaceVariables("{processtitle}"));
+        verify(replacer, times(1)).replace("{processtitle}");
+    }
+}
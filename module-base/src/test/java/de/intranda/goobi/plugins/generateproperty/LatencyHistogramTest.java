@@ -0,0 +1,54 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void emptyHistogram_expectZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanMillis(), DELTA);
+        assertEquals(0, histogram.getPercentileMillis(0.99), DELTA);
+    }
+
+    @Test
+    public void recordedValues_expectUpperBoundOfBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 98 values in the bucket [512, 1024) and two in [1048576, 2097152)
+        for (int i = 0; i < 98; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(2_000_000);
+        histogram.record(1_500_000);
+        assertEquals(100, histogram.getCount());
+        assertEquals((98 * 1000 + 3_500_000) / 100d / 1_000_000d, histogram.getMeanMillis(), DELTA);
+        assertEquals(1024 / 1_000_000d, histogram.getPercentileMillis(0.5), DELTA);
+        assertEquals(1024 / 1_000_000d, histogram.getPercentileMillis(0.98), DELTA);
+        assertEquals(2_097_152 / 1_000_000d, histogram.getPercentileMillis(0.99), DELTA);
+        assertEquals(2_097_152 / 1_000_000d, histogram.getPercentileMillis(1), DELTA);
+    }
+
+    @Test
+    public void zeroDuration_expectSmallestBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        assertEquals(2 / 1_000_000d, histogram.getPercentileMillis(1), DELTA);
+    }
+
+    @Test
+    public void reset_expectEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(2_000_000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanMillis(), DELTA);
+        assertEquals(0, histogram.getPercentileMillis(0.99), DELTA);
+        histogram.record(1000);
+        assertEquals(1024 / 1_000_000d, histogram.getPercentileMillis(0.99), DELTA);
+    }
+}
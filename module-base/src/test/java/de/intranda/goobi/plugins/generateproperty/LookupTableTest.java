@@ -0,0 +1,68 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LookupTableTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void literalMode_expectAllOccurrencesReplaced() {
+        LookupTable table = new LookupTable(LookupTable.Mode.LITERAL, Map.of("Handschriften", "01_Handschriften", "Musik", "05_Musik"));
+        assertEquals("01_Handschriften und 05_Musik", table.apply("Handschriften und Musik"));
+        assertEquals("nothing to do", table.apply("nothing to do"));
+    }
+
+    @Test
+    public void overlappingKeys_expectLeftmostLongestMatch() {
+        LookupTable table = new LookupTable(LookupTable.Mode.LITERAL, Map.of("he", "1", "she", "2", "hers", "3", "a", "4", "ab", "5"));
+        assertEquals("u2rs", table.apply("ushers"));
+        assertEquals("5", table.apply("ab"));
+        assertEquals("4c", table.apply("ac"));
+    }
+
+    @Test
+    public void replacedText_expectNoRescan() {
+        LookupTable table = new LookupTable(LookupTable.Mode.LITERAL, Map.of("a", "b", "b", "c"));
+        assertEquals("bc", table.apply("ab"));
+    }
+
+    @Test
+    public void exactMode_expectWholeValueReplaced() {
+        LookupTable table = new LookupTable(LookupTable.Mode.EXACT, Map.of("Musik", "MUS"));
+        assertEquals("MUS", table.apply("Musik"));
+        assertEquals("Musikalien", table.apply("Musikalien"));
+    }
+
+    @Test
+    public void differentEntries_expectDifferentSignature() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("a", "b");
+        String signature = new LookupTable(LookupTable.Mode.LITERAL, entries).getSignature();
+        entries.put("c", "d");
+        assertNotEquals(signature, new LookupTable(LookupTable.Mode.LITERAL, entries).getSignature());
+        assertNotEquals(signature, new LookupTable(LookupTable.Mode.EXACT, Map.of("a", "b")).getSignature());
+    }
+
+    @Test
+    public void readFile_expectEntriesWithoutComments() throws Exception {
+        File file = folder.newFile("table.tsv");
+        Files.writeString(file.toPath(), "# comment\nHandschriften\tHS\n\nMusik\tMUS\twith tab\n", StandardCharsets.UTF_8);
+        Map<String, String> entries = LookupTable.readFile(file.toPath(), "\\t");
+        assertEquals(2, entries.size());
+        assertEquals("HS", entries.get("Handschriften"));
+        assertEquals("MUS\twith tab", entries.get("Musik"));
+    }
+}
@@ -0,0 +1,32 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class MBeansTest {
+    private static final String NAME = "de.intranda.goobi.plugins:type=GenerateProperty,name=MBeansTest";
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    @After
+    public void tearDown() throws Exception {
+        if (server.isRegistered(new ObjectName(NAME))) {
+            server.unregisterMBean(new ObjectName(NAME));
+        }
+    }
+
+    @Test
+    public void registeredTwice_expectSecondBeanReplacesFirst() throws Exception {
+        MBeans.register(new FileformatCache(), NAME, "the first cache");
+        FileformatCache second = MBeans.register(new FileformatCache(), NAME, "the second cache");
+        second.get(1, "a", 10, 0, () -> null);
+        assertEquals(1L, server.getAttribute(new ObjectName(NAME), "Misses"));
+    }
+}
@@ -0,0 +1,163 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Set;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.goobi.beans.Process;
+import org.goobi.beans.Project;
+import org.goobi.beans.Step;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.powermock.api.easymock.PowerMock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import de.intranda.goobi.plugins.generateproperty.MetsFieldExtractor.Level;
+import de.sub.goobi.config.ConfigurationHelper;
+import de.sub.goobi.helper.VariableReplacer;
+import ugh.dl.Fileformat;
+import ugh.dl.Prefs;
+import ugh.fileformats.mets.MetsMods;
+
+/**
+ * Compares the streaming extraction with the output of the VariableReplacer on the fully loaded digital document.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ VariableReplacer.class, ConfigurationHelper.class })
+@PowerMockIgnore({ "javax.management.*", "javax.xml.*", "org.xml.*", "org.w3c.*", "javax.net.ssl.*", "jdk.internal.reflect.*" })
+public class MetsFieldExtractorTest {
+    private static final Set<String> FIELDS = Set.of("CatalogIDDigital", "TitleDocMain", "PublicationYear", "CurrentNo", "PlaceOfPublication",
+            "DocLanguage", "TitleDocSub1");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path metadataFile;
+    private VariableReplacer replacer;
+
+    @Before
+    public void setUp() throws Exception {
+        String resourcesFolder = "src/test/resources/";
+        if (!Files.exists(Paths.get(resourcesFolder))) {
+            resourcesFolder = "target/test-classes/";
+        }
+        File metadataDirectory = folder.newFolder("metadata");
+        Path processDirectory = Files.createDirectories(metadataDirectory.toPath().resolve("1"));
+        metadataFile = Files.copy(Paths.get(resourcesFolder, "meta.xml"), processDirectory.resolve("meta.xml"));
+        Files.copy(Paths.get(resourcesFolder, "meta_anchor.xml"), processDirectory.resolve("meta_anchor.xml"));
+
+        PowerMock.mockStatic(ConfigurationHelper.class);
+        ConfigurationHelper configurationHelper = EasyMock.createMock(ConfigurationHelper.class);
+        EasyMock.expect(ConfigurationHelper.getInstance()).andReturn(configurationHelper).anyTimes();
+        EasyMock.expect(configurationHelper.isAllowWhitespacesInFolder()).andReturn(false).anyTimes();
+        EasyMock.expect(configurationHelper.useS3()).andReturn(false).anyTimes();
+        EasyMock.expect(configurationHelper.getGoobiFolder()).andReturn(resourcesFolder).anyTimes();
+        EasyMock.expect(configurationHelper.getMetadataFolder()).andReturn(metadataDirectory.getAbsolutePath() + File.separator).anyTimes();
+        EasyMock.expect(configurationHelper.getRulesetFolder()).andReturn(resourcesFolder).anyTimes();
+        EasyMock.expect(configurationHelper.getScriptsFolder()).andReturn(resourcesFolder).anyTimes();
+        EasyMock.expect(configurationHelper.getProcessImagesMainDirectoryName()).andReturn("00469418X_media").anyTimes();
+        EasyMock.expect(configurationHelper.isUseMasterDirectory()).andReturn(true).anyTimes();
+        EasyMock.expect(configurationHelper.getConfigurationFolder()).andReturn(resourcesFolder).anyTimes();
+        EasyMock.replay(configurationHelper);
+        PowerMock.replay(ConfigurationHelper.class);
+
+        // the same setup as in GeneratePropertyPluginTest, the replacement of the metadata tokens itself is not mocked
+        PowerMock.mockStatic(VariableReplacer.class);
+        EasyMock.expect(VariableReplacer.findRegexMatches(EasyMock.anyString(), EasyMock.anyObject())).andReturn(Collections.emptyList()).anyTimes();
+        EasyMock.expect(VariableReplacer.simpleReplace(EasyMock.anyString(), EasyMock.anyObject()))
+                .andAnswer((IAnswer<String>) () -> (String) EasyMock.getCurrentArguments()[0])
+                .anyTimes();
+        PowerMock.replay(VariableReplacer.class);
+
+        Prefs prefs = new Prefs();
+        prefs.loadPrefs(resourcesFolder + "ruleset.xml");
+        Fileformat fileformat = new MetsMods(prefs);
+        fileformat.read(metadataFile.toString());
+
+        Project project = new Project();
+        project.setTitel("GeneratePropertyProject");
+        Process process = new Process();
+        process.setTitel("00469418X");
+        process.setProjekt(project);
+        process.setId(1);
+        Step step = new Step();
+        step.setTitel("test step");
+        step.setProzess(process);
+        replacer = new VariableReplacer(fileformat.getDigitalDocument(), prefs, process, step);
+    }
+
+    @Test
+    public void allFieldsOnAllLevels_expectSameValuesAsVariableReplacer() throws Exception {
+        MetsFieldExtractor extractor = new MetsFieldExtractor(metadataFile, FIELDS);
+        for (String field : FIELDS) {
+            for (Level level : Level.values()) {
+                assertEquals(level + " " + field, replacer.replace(token(level, field)), extractor.getValue(level, field));
+            }
+        }
+    }
+
+    @Test
+    public void firstChildFieldOnly_expectAnchorNotRead() throws Exception {
+        MetsFieldExtractor extractor = new MetsFieldExtractor(metadataFile, FIELDS);
+        assertEquals("98765432", extractor.getValue(Level.ALL, "CatalogIDDigital"));
+        assertTrue(extractor.getBytesRead() > 0);
+        assertTrue(extractor.getBytesRead() <= Files.size(metadataFile));
+    }
+
+    @Test
+    public void largeFile_expectOnlyLogicalStructureRead() throws Exception {
+        // stands in for a large physical structMap and structLink section behind the logical structMap
+        Files.writeString(metadataFile, "<!-- " + "x".repeat(1_000_000) + " -->\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        MetsFieldExtractor extractor = new MetsFieldExtractor(metadataFile, FIELDS);
+        assertEquals("98765432", extractor.getValue(Level.ALL, "CatalogIDDigital"));
+        assertTrue(extractor.getBytesRead() < 100_000);
+    }
+
+    @Test
+    public void largeFileSec_expectReadingStoppedAfterFirstDmdSecs() throws Exception {
+        // a file group with 20000 images between the dmdSecs and the logical structMap
+        StringBuilder files = new StringBuilder("<mets:fileSec>\n<mets:fileGrp USE=\"LOCAL\">\n");
+        for (int i = 1; i <= 20_000; i++) {
+            String id = String.format("FILE_%05d", i);
+            files.append("<mets:file ID=\"")
+                    .append(id)
+                    .append("\" MIMETYPE=\"image/tiff\"><mets:FLocat LOCTYPE=\"URL\" xlink:href=\"file:///opt/digiverso/")
+                    .append(id)
+                    .append(".tif\"/></mets:file>\n");
+        }
+        files.append("</mets:fileGrp>\n</mets:fileSec>\n");
+        String mets = Files.readString(metadataFile, StandardCharsets.UTF_8);
+        int start = mets.indexOf("<mets:fileSec>");
+        int end = mets.indexOf("</mets:fileSec>") + "</mets:fileSec>".length();
+        Files.writeString(metadataFile, mets.substring(0, start) + files + mets.substring(end), StandardCharsets.UTF_8);
+        assertTrue(Files.size(metadataFile) > 1_000_000);
+
+        MetsFieldExtractor extractor = new MetsFieldExtractor(metadataFile, Set.of("CatalogIDDigital"));
+        assertEquals("98765432", extractor.getValue(Level.ALL, "CatalogIDDigital"));
+        assertEquals("98765432", extractor.getValue(Level.FIRSTCHILD, "CatalogIDDigital"));
+        assertTrue(extractor.getBytesRead() < 100_000);
+    }
+
+    private static String token(Level level, String field) {
+        return switch (level) {
+            case ALL -> "{meta." + field + "}";
+            case TOPSTRUCT -> "{meta.topstruct." + field + "}";
+            case FIRSTCHILD -> "{meta.firstchild." + field + "}";
+        };
+    }
+}
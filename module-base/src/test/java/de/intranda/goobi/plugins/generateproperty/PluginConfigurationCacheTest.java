@@ -0,0 +1,136 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.configuration.SubnodeConfiguration;
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
+import org.easymock.EasyMock;
+import org.goobi.beans.Process;
+import org.goobi.beans.Project;
+import org.goobi.beans.Step;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.powermock.api.easymock.PowerMock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import de.sub.goobi.config.ConfigPlugins;
+import de.sub.goobi.config.ConfigurationHelper;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ ConfigurationHelper.class, ConfigPlugins.class })
+@PowerMockIgnore({ "javax.management.*", "javax.xml.*", "org.xml.*", "org.w3c.*", "jdk.internal.reflect.*" })
+public class PluginConfigurationCacheTest {
+    private static final String PLUGIN_TITLE = "intranda_step_generate_property";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private Path configFile;
+    private Path lookupFile;
+    private Step step;
+
+    @Before
+    public void setUp() throws Exception {
+        PluginConfigurationCache.clear();
+        configFile = folder.getRoot().toPath().resolve("plugin_" + PLUGIN_TITLE + ".xml");
+        Files.writeString(configFile, "<config_plugin><config><project>*</project><step>*</step>"
+                + "<property name=\"Archive Folder\" value=\"Handschriften\"><map file=\"lookup.csv\" /></property>"
+                + "</config></config_plugin>", StandardCharsets.UTF_8);
+        lookupFile = folder.getRoot().toPath().resolve("lookup.csv");
+        Files.writeString(lookupFile, "Handschriften,01_Handschriften\n", StandardCharsets.UTF_8);
+
+        PowerMock.mockStatic(ConfigurationHelper.class);
+        ConfigurationHelper configurationHelper = EasyMock.createMock(ConfigurationHelper.class);
+        EasyMock.expect(ConfigurationHelper.getInstance()).andReturn(configurationHelper).anyTimes();
+        EasyMock.expect(configurationHelper.getConfigurationFolder()).andReturn(folder.getRoot().getAbsolutePath() + "/").anyTimes();
+        EasyMock.replay(configurationHelper);
+        PowerMock.replay(ConfigurationHelper.class);
+
+        Project project = new Project();
+        project.setTitel("GeneratePropertyProject");
+        Process process = new Process();
+        process.setId(1);
+        process.setProjekt(project);
+        step = new Step();
+        step.setTitel("test step");
+        step.setProzess(process);
+
+        PowerMock.mockStatic(ConfigPlugins.class);
+        EasyMock.expect(ConfigPlugins.getProjectAndStepConfig(PLUGIN_TITLE, step)).andAnswer(this::loadConfiguration).anyTimes();
+        PowerMock.replay(ConfigPlugins.class);
+    }
+
+    @After
+    public void tearDown() {
+        PluginConfigurationCache.clear();
+    }
+
+    private SubnodeConfiguration loadConfiguration() throws Exception {
+        loads.incrementAndGet();
+        XMLConfiguration xmlConfig = new XMLConfiguration();
+        xmlConfig.setDelimiterParsingDisabled(true);
+        xmlConfig.load(configFile.toFile());
+        xmlConfig.setExpressionEngine(new XPathExpressionEngine());
+        return xmlConfig.configurationAt("//config");
+    }
+
+    private static void touch(Path file) throws Exception {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 10_000));
+    }
+
+    @Test
+    public void unchangedFiles_expectCachedConfiguration() throws Exception {
+        PluginConfiguration configuration = PluginConfigurationCache.get(PLUGIN_TITLE, step);
+        assertSame(configuration, PluginConfigurationCache.get(PLUGIN_TITLE, step));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void changedConfigurationFile_expectConfigurationParsedAgain() throws Exception {
+        PluginConfiguration configuration = PluginConfigurationCache.get(PLUGIN_TITLE, step);
+        touch(configFile);
+        PluginConfiguration reloaded = PluginConfigurationCache.get(PLUGIN_TITLE, step);
+        assertNotSame(configuration, reloaded);
+        assertEquals(2, loads.get());
+        assertSame(reloaded, PluginConfigurationCache.get(PLUGIN_TITLE, step));
+    }
+
+    @Test
+    public void changedLookupFile_expectConfigurationParsedAgain() throws Exception {
+        PluginConfiguration configuration = PluginConfigurationCache.get(PLUGIN_TITLE, step);
+        Files.writeString(lookupFile, "Handschriften,02_Handschriften\n", StandardCharsets.UTF_8);
+        touch(lookupFile);
+        assertTrue(configuration.isOutdated());
+        PluginConfiguration reloaded = PluginConfigurationCache.get(PLUGIN_TITLE, step);
+        assertNotSame(configuration, reloaded);
+        assertEquals(2, loads.get());
+        assertEquals("02_Handschriften", reloaded.getPropertyDefinitions().get(0).getReplacements().get(0).apply("Handschriften"));
+    }
+
+    @Test
+    public void missingConfigurationFile_expectNothingCached() throws Exception {
+        // the configuration is found elsewhere, e.g. in the classpath, so its modification time is unknown
+        Path otherFile = folder.getRoot().toPath().resolve("other.xml");
+        Files.move(configFile, otherFile);
+        configFile = otherFile;
+        assertNotSame(PluginConfigurationCache.get(PLUGIN_TITLE, step), PluginConfigurationCache.get(PLUGIN_TITLE, step));
+        assertEquals(2, loads.get());
+    }
+}
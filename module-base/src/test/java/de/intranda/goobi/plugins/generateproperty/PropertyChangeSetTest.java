@@ -0,0 +1,101 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PropertyChangeSetTest {
+
+    private Process process;
+    private GoobiProperty first;
+    private GoobiProperty second;
+
+    @Before
+    public void setUp() {
+        process = new Process();
+        process.setId(1);
+        first = createProperty("Archive Folder", "01_Handschriften");
+        second = createProperty("Archive Folder", "old");
+        List<GoobiProperty> properties = new ArrayList<>();
+        properties.add(first);
+        properties.add(createProperty("Other", "value"));
+        properties.add(second);
+        process.setProperties(properties);
+    }
+
+    private GoobiProperty createProperty(String name, String value) {
+        GoobiProperty property = new GoobiProperty(GoobiProperty.PropertyOwnerType.PROCESS);
+        property.setOwner(process);
+        property.setPropertyName(name);
+        property.setPropertyValue(value);
+        return property;
+    }
+
+    @Test
+    public void firstPolicy_expectOnlyFirstDuplicateCompared() {
+        PropertyChangeSet changes = new PropertyChangeSet(process, PropertyChangeSet.DuplicatePolicy.FIRST);
+        assertFalse(changes.set("Archive Folder", "01_Handschriften"));
+        assertTrue(changes.isEmpty());
+        assertEquals(1, changes.getUnchangedCount());
+    }
+
+    @Test
+    public void allPolicy_expectAllDuplicatesUpdated() {
+        PropertyChangeSet changes = new PropertyChangeSet(process, PropertyChangeSet.DuplicatePolicy.ALL);
+        assertTrue(changes.set("Archive Folder", "01_Handschriften"));
+        assertEquals(2, changes.getChanges().size());
+        assertEquals("01_Handschriften", second.getPropertyValue());
+        assertTrue(changes.getDeletions().isEmpty());
+    }
+
+    @Test
+    public void collapsePolicy_expectFirstUpdatedAndOthersDeleted() {
+        PropertyChangeSet changes = new PropertyChangeSet(process, PropertyChangeSet.DuplicatePolicy.COLLAPSE);
+        assertTrue(changes.set("Archive Folder", "05_Musik"));
+        assertEquals(1, changes.getChanges().size());
+        assertSame(first, changes.getChanges().get(0));
+        assertEquals("05_Musik", first.getPropertyValue());
+        assertEquals(List.of(second), changes.getDeletions());
+    }
+
+    @Test
+    public void repeatedName_expectLastValueWrittenOnce() {
+        PropertyChangeSet changes = new PropertyChangeSet(process);
+        changes.set("New", "a");
+        changes.set("New", "b");
+        assertEquals(1, changes.getChanges().size());
+        assertEquals("b", changes.getChanges().get(0).getPropertyValue());
+        assertEquals("value", changes.getExistingValue("Other"));
+    }
+
+    @Test
+    public void storedValueThenChangedValue_expectChangedOnly() {
+        PropertyChangeSet changes = new PropertyChangeSet(process);
+        assertFalse(changes.set("Other", "value"));
+        assertTrue(changes.set("Other", "new value"));
+        assertEquals(0, changes.getUnchangedCount());
+        assertEquals(1, changes.getChanges().size());
+        assertEquals("new value", changes.getChanges().get(0).getPropertyValue());
+    }
+
+    @Test
+    public void changedValueThenStoredValue_expectNothingWritten() {
+        PropertyChangeSet changes = new PropertyChangeSet(process, PropertyChangeSet.DuplicatePolicy.COLLAPSE);
+        assertTrue(changes.set("Archive Folder", "05_Musik"));
+        assertTrue(changes.set("Other", "new value"));
+        assertFalse(changes.set("Other", "value"));
+        assertEquals(1, changes.getUnchangedCount());
+        assertEquals(List.of(first), changes.getChanges());
+        assertEquals("value", changes.getExistingValue("Other"));
+        assertEquals(List.of(second), changes.getDeletions());
+    }
+}
@@ -0,0 +1,206 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.sub.goobi.helper.VariableReplacer;
+
+public class PropertyGeneratorTest {
+
+    private Process process;
+    private GenerationContext context;
+    private PluginConfiguration configuration;
+
+    @Before
+    public void setUp() throws Exception {
+        process = new Process();
+        process.setId(1);
+        process.setTitel("kleiuniv_PPN517154005");
+        process.setProperties(new ArrayList<>());
+
+        ProcessMetadata metadata = mock(ProcessMetadata.class);
+        context = mock(GenerationContext.class);
+        when(context.getProcess()).thenReturn(process);
+        when(context.getMetadata()).thenReturn(metadata);
+        when(context.replaceMetadataFields(anyString())).then(returnsFirstArg());
+        when(context.getMetrics()).thenReturn(mock(StepMetrics.class));
+        when(context.getSpecialReplacementErrors()).thenReturn(mock(SpecialReplacementErrors.class));
+        // the first definitions take longest, so the values are finished in reverse order
+        when(context.replaceVariables(anyString())).then(invocation -> {
+            String value = invocation.getArgument(0);
+            Thread.sleep(100 - 10L * Integer.parseInt(value.substring(value.lastIndexOf('-') + 1)));
+            return value.replace("{processtitle}", process.getTitel());
+        });
+        when(context.replaceVariablesWithoutMetadata(anyString())).then(invocation -> {
+            String value = invocation.getArgument(0);
+            return value.replace("{processtitle}", process.getTitel());
+        });
+        when(context.resolveSpecial(anyString(), any())).then(invocation -> {
+            UnaryOperator<String> resolver = invocation.getArgument(1);
+            return resolver.apply(invocation.getArgument(0));
+        });
+
+        configuration = mock(PluginConfiguration.class);
+        when(configuration.getDuplicatePolicy()).thenReturn(PropertyChangeSet.DuplicatePolicy.FIRST);
+        when(configuration.getParallelDefinitions()).thenReturn(4);
+    }
+
+    private static PropertyDefinition definition(String name, String value) {
+        return new PropertyDefinition(name, value, List.of());
+    }
+
+    @Test
+    public void parallelDefinitions_expectValuesInConfigurationOrder() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        Process tracked = new Process() {
+            @Override
+            public String getTitel() {
+                return access(active, maxActive, 0, super::getTitel);
+            }
+        };
+        tracked.setId(1);
+        tracked.setTitel("kleiuniv_PPN517154005");
+        tracked.setProperties(new ArrayList<>());
+        Step step = new Step();
+        step.setTitel("Generate properties");
+        step.setProzess(tracked);
+
+        // the first definitions take longest, so unserialized values would be finished in reverse order
+        VariableReplacer replacer = mock(VariableReplacer.class);
+        when(replacer.replace(anyString())).then(invocation -> {
+            String value = invocation.getArgument(0);
+            long millis = 80 - 10L * Integer.parseInt(value.substring(value.lastIndexOf('-') + 1));
+            return access(active, maxActive, millis,
+                    () -> value.replace("{processtitle}", "kleiuniv_PPN517154005").replace("{product.Signatur}", "PPN517154005"));
+        });
+        ProcessMetadata metadata = mock(ProcessMetadata.class);
+        when(metadata.replaceMetadataFields(anyString())).then(returnsFirstArg());
+        when(metadata.getVariableReplacer(anyString())).thenReturn(replacer);
+        when(metadata.getPlainVariableReplacer()).thenReturn(replacer);
+        GenerationContext realContext = new GenerationContext(tracked, step, metadata);
+
+        List<PropertyDefinition> definitions = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String value = i % 3 == 0 ? "{processtitle}" : i % 3 == 1 ? "{{titel}}" : "{product.Signatur}";
+            definitions.add(definition("Property " + i, value + "-" + i));
+        }
+        when(configuration.getPropertyDefinitions()).thenReturn(definitions);
+
+        PropertyChangeSet changes = PropertyGenerator.generate(realContext, configuration);
+
+        List<GoobiProperty> properties = changes.getChanges();
+        assertEquals(8, properties.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals("Property " + i, properties.get(i).getPropertyName());
+            assertEquals((i % 3 == 2 ? "PPN517154005-" : "kleiuniv_PPN517154005-") + i, properties.get(i).getPropertyValue());
+        }
+        // the process loads its associations lazily, so it is never accessed by two threads at the same time
+        assertEquals(1, maxActive.get());
+    }
+
+    /**
+     * Count the threads inside a process access
+     */
+    private static <T> T access(AtomicInteger active, AtomicInteger maxActive, long millis, Supplier<T> access) {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(millis);
+            return access.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    @Test
+    public void unchangedInputs_expectGenerationSkipped() throws Exception {
+        setupIncremental();
+        apply(PropertyGenerator.generate(context, configuration));
+        clearInvocations(context);
+
+        PropertyChangeSet changes = PropertyGenerator.generate(context, configuration);
+        assertTrue(changes.isEmpty());
+        assertEquals(2, changes.getUnchangedCount());
+        verify(context, never()).replaceVariables(anyString());
+    }
+
+    @Test
+    public void changedInput_expectGeneration() throws Exception {
+        setupIncremental();
+        apply(PropertyGenerator.generate(context, configuration));
+        clearInvocations(context);
+
+        process.setTitel("kleiuniv_PPN517154006");
+        PropertyChangeSet changes = PropertyGenerator.generate(context, configuration);
+        verify(context).replaceVariables("{processtitle}-0");
+        assertEquals("kleiuniv_PPN517154006-0", changedValue(changes, "Property 0"));
+        assertEquals("kleiuniv_PPN517154006-1", changedValue(changes, "Property 1"));
+    }
+
+    @Test
+    public void manuallyEditedProperty_expectGeneration() throws Exception {
+        setupIncremental();
+        apply(PropertyGenerator.generate(context, configuration));
+        clearInvocations(context);
+
+        process.getProperties()
+                .stream()
+                .filter(property -> "Property 1".equals(property.getPropertyName()))
+                .forEach(property -> property.setPropertyValue("edited"));
+        PropertyChangeSet changes = PropertyGenerator.generate(context, configuration);
+        verify(context).replaceVariables("{processtitle}-0");
+        assertEquals("kleiuniv_PPN517154005-1", changedValue(changes, "Property 1"));
+    }
+
+    private void setupIncremental() {
+        when(configuration.getParallelDefinitions()).thenReturn(1);
+        when(configuration.isIncremental()).thenReturn(true);
+        when(configuration.getVersion()).thenReturn("1");
+        when(configuration.getFingerprintProperty()).thenReturn("Fingerprint");
+        when(configuration.getPropertyDefinitions())
+                .thenReturn(List.of(definition("Property 0", "{processtitle}-0"), definition("Property 1", "{{titel}}-1")));
+    }
+
+    /**
+     * Store the changed properties in the process like the property writer does
+     */
+    private void apply(PropertyChangeSet changes) {
+        for (GoobiProperty property : changes.getChanges()) {
+            if (!process.getProperties().contains(property)) {
+                process.getProperties().add(property);
+            }
+        }
+    }
+
+    private static String changedValue(PropertyChangeSet changes, String name) {
+        return changes.getChanges()
+                .stream()
+                .filter(property -> name.equals(property.getPropertyName()))
+                .map(GoobiProperty::getPropertyValue)
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -0,0 +1,52 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class PropertyGuardTest {
+
+    @Test
+    public void existsAndEmpty_expectStoredValueChecked() {
+        PropertyGuard exists = PropertyGuard.compile("exists");
+        assertNull(exists.getOperand());
+        assertTrue(exists.test(null, ""));
+        assertFalse(exists.test(null, null));
+        PropertyGuard empty = PropertyGuard.compile(" EMPTY ");
+        assertTrue(empty.test(null, null));
+        assertTrue(empty.test(null, ""));
+        assertFalse(empty.test(null, "value"));
+    }
+
+    @Test
+    public void comparison_expectOperandCompiledAsTemplate() {
+        PropertyGuard guard = PropertyGuard.compile("{{projekt.titel}} == 'Archive'");
+        assertEquals(PropertyGuard.Kind.EQUALS, guard.getKind());
+        assertEquals(List.of("projekt.titel"), guard.getOperand().getSpecialExpressions());
+        assertTrue(guard.test("Archive", null));
+        assertFalse(guard.test("Archive 2", null));
+    }
+
+    @Test
+    public void notEqualsWithQuote_expectUnescapedText() {
+        PropertyGuard guard = PropertyGuard.compile("{processtitle} != 'it''s'");
+        assertEquals(PropertyGuard.Kind.NOT_EQUALS, guard.getKind());
+        assertFalse(guard.test("it's", "value"));
+        assertTrue(guard.test("its", "value"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingOperator_expectIllegalArgumentException() {
+        PropertyGuard.compile("{{projekt.titel}}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingLeftSide_expectIllegalArgumentException() {
+        PropertyGuard.compile("== 'Archive'");
+    }
+}
@@ -0,0 +1,87 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Pattern;
+
+import org.apache.commons.digester.plugins.PluginException;
+import org.junit.Test;
+
+public class PropertyReplacementTest {
+
+    private static final String RUNAWAY_REGEX = "(.*a){12}$";
+    private static final String RUNAWAY_INPUT = "a".repeat(40) + "!";
+
+    private static final String[] PATTERNS = { "a", "x*", "(a|ab)(c|bcd)(d*)", "(a+)(b+)?", "a*?b", "\\d+", "[^a-c]+", "\\bfoo\\b", "^Hand",
+            "schriften$", "(?:ab|a)+?c", "[a-z]{2,3}", "(\\w+)\\s(\\w+)", "(.)\\.", "[\\d.-]+", "\\Qa.b\\E", "colou?r", "Musik|Musikalien",
+            "(x)?y", "\\s*,\\s*", "\\x41", "(?i)musik" };
+
+    private static final String[] INPUTS = { "", "a", "aaa", "abcd", "abbbcd", "xaaby", "Handschriften und Musik", "foo foobar foo", "12.3-4, 5 ,6",
+            "colour color", "Musikalien", "a.b a.b", "xyzzy", "ABBA" };
+
+    @Test
+    public void linearEngine_expectSameResultAsJavaEngine() throws PluginException {
+        for (String regex : PATTERNS) {
+            String replacement = Pattern.compile(regex).matcher("").groupCount() > 0 ? "<$1>" : "[$0]";
+            PropertyReplacement java = new PropertyReplacement(regex, replacement, PropertyReplacement.Engine.JAVA, 0);
+            PropertyReplacement linear = new PropertyReplacement(regex, replacement, PropertyReplacement.Engine.LINEAR, 0);
+            assertTrue(linear.isLinear());
+            for (String input : INPUTS) {
+                assertEquals(regex + " on '" + input + "'", java.replace(input), linear.replace(input));
+            }
+        }
+    }
+
+    @Test
+    public void runawayRegexWithLinearEngine_expectFastResult() throws PluginException {
+        String input = "a".repeat(2000) + "!";
+        PropertyReplacement replacement = new PropertyReplacement(RUNAWAY_REGEX, "x", PropertyReplacement.Engine.LINEAR, 0);
+        assertEquals(input, replacement.replace(input));
+    }
+
+    @Test(expected = PluginException.class)
+    public void runawayJavaRegex_expectTimeout() throws PluginException {
+        new PropertyReplacement(RUNAWAY_REGEX, "x", PropertyReplacement.Engine.JAVA, 100).replace(RUNAWAY_INPUT);
+    }
+
+    @Test
+    public void runawayRegexWithAutoEngine_expectLinearEngine() throws PluginException {
+        PropertyReplacement replacement = new PropertyReplacement(RUNAWAY_REGEX, "x", PropertyReplacement.Engine.AUTO, 100);
+        assertTrue(replacement.isLinear());
+        assertEquals(RUNAWAY_INPUT, replacement.replace(RUNAWAY_INPUT));
+    }
+
+    @Test
+    public void unsupportedRegexWithAutoEngine_expectJavaEngine() throws PluginException {
+        PropertyReplacement replacement = new PropertyReplacement("(a)\\1", "b", PropertyReplacement.Engine.AUTO, 100);
+        assertFalse(replacement.isLinear());
+        assertEquals("xbx", replacement.replace("xaax"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedRegexWithLinearEngine_expectRejection() {
+        new PropertyReplacement("(a)\\1", "b", PropertyReplacement.Engine.LINEAR, 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lookaheadWithLinearEngine_expectRejection() {
+        new PropertyReplacement("a(?=b)", "b", PropertyReplacement.Engine.LINEAR, 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRegex_expectRejection() {
+        new PropertyReplacement("(unclosed", "b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingGroupInReplacement_expectRejection() {
+        new PropertyReplacement("(a)", "$2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingGroupInReplacementWithLinearEngine_expectRejection() {
+        new PropertyReplacement("(a)", "$2", PropertyReplacement.Engine.LINEAR, 0);
+    }
+}
@@ -0,0 +1,70 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PropertyTemplateTest {
+
+    @Test
+    public void staticText_expectUnchangedValue() {
+        PropertyTemplate template = PropertyTemplate.compile("This is static");
+        PropertyTemplate.Rendered rendered = template.render(expression -> {
+            throw new AssertionError("no expression expected");
+        });
+        assertEquals("This is static", rendered.value());
+        assertFalse(rendered.containsVariables());
+    }
+
+    @Test
+    public void repeatedExpressions_expectSingleResolution() {
+        List<String> resolved = new ArrayList<>();
+        PropertyTemplate template = PropertyTemplate.compile("{{a.b}}-{{c}}-{{a.b}}");
+        PropertyTemplate.Rendered rendered = template.render(expression -> {
+            resolved.add(expression);
+            return expression.toUpperCase();
+        });
+        assertEquals("A.B-C-A.B", rendered.value());
+        assertEquals(List.of("a.b", "c"), resolved);
+    }
+
+    @Test
+    public void variablesInLiteralOrValue_expectVariableReplacement() {
+        assertTrue(PropertyTemplate.compile("{meta.CatalogIDDigital}_{{titel}}").render(e -> "x").containsVariables());
+        assertTrue(PropertyTemplate.compile("{{titel}}").render(e -> "{processtitle}").containsVariables());
+        assertFalse(PropertyTemplate.compile("prefix_{{titel}}").render(e -> "x").containsVariables());
+    }
+
+    @Test
+    public void resolvedValueWithExpression_expectExpandedAgain() {
+        List<Integer> slots = new ArrayList<>();
+        PropertyTemplate template = PropertyTemplate.compile("{{outer}}_{{other}}");
+        PropertyTemplate.Rendered rendered = template.render((slot, expression) -> {
+            slots.add(slot);
+            switch (expression) {
+                case "outer":
+                    return "[{{inner}}]";
+                case "inner":
+                    return "{processtitle}";
+                default:
+                    return "x";
+            }
+        });
+        assertEquals("[{processtitle}]_x", rendered.value());
+        assertTrue(rendered.containsVariables());
+        // expressions from resolved values have no slot
+        assertEquals(List.of(0, 1, -1), slots);
+    }
+
+    @Test
+    public void valueContainingOwnExpression_expectRenderingEnds() {
+        PropertyTemplate.Rendered rendered = PropertyTemplate.compile("{{loop}}").render(e -> "a{{loop}}");
+        assertTrue(rendered.value().startsWith("aaa"));
+        assertTrue(rendered.value().endsWith("{{loop}}"));
+    }
+}
@@ -0,0 +1,81 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.digester.plugins.PluginException;
+import org.junit.Before;
+import org.junit.Test;
+
+import ugh.dl.Prefs;
+
+public class RulesetCacheTest {
+
+    private Path rulesetFile;
+
+    @Before
+    public void setUp() {
+        rulesetFile = Paths.get("src/test/resources/ruleset.xml");
+        if (!Files.exists(rulesetFile)) {
+            rulesetFile = Paths.get("target/test-classes/ruleset.xml");
+        }
+    }
+
+    @Test
+    public void repeatedAccess_expectSingleParse() throws PluginException {
+        RulesetCache cache = new RulesetCache(4);
+        Prefs prefs = cache.get(rulesetFile, 1);
+        assertSame(prefs, cache.get(rulesetFile, 1));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void changedFile_expectNewParse() throws PluginException {
+        RulesetCache cache = new RulesetCache(4);
+        Prefs prefs = cache.get(rulesetFile, 1);
+        assertNotSame(prefs, cache.get(rulesetFile, 2));
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void concurrentAccess_expectSingleParse() throws Exception {
+        RulesetCache cache = new RulesetCache(4);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Prefs>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get(rulesetFile, 1)));
+            }
+            Prefs first = results.get(0).get();
+            for (Future<Prefs> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(7, cache.getHits());
+    }
+
+    @Test(expected = PluginException.class)
+    public void missingFile_expectPluginException() throws PluginException {
+        RulesetCache cache = new RulesetCache(4);
+        try {
+            cache.get(Paths.get("does-not-exist.xml"), 1);
+        } finally {
+            assertEquals(0, cache.getSize());
+        }
+    }
+}
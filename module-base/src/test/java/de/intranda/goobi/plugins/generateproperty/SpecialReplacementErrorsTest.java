@@ -0,0 +1,27 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class SpecialReplacementErrorsTest {
+
+    @Test
+    public void repeatedError_expectSingleEntryWithCount() {
+        SpecialReplacementErrors errors = new SpecialReplacementErrors();
+        assertTrue(errors.isEmpty());
+        errors.add("schritte[5].titel", new IndexOutOfBoundsException("Index 5 out of bounds"));
+        errors.add("schritte[5].titel", new IndexOutOfBoundsException("Index 5 out of bounds"));
+        errors.add("schritte[5].titel", new IllegalArgumentException("not a list"));
+        errors.add("unknown", new NoSuchMethodException("Process.getUnknown()"));
+
+        assertEquals(Map.of("{{schritte[5].titel}} (IndexOutOfBoundsException)", 2, "{{schritte[5].titel}} (IllegalArgumentException)", 1,
+                "{{unknown}} (NoSuchMethodException)", 1), errors.getCounts());
+        assertEquals("{{schritte[5].titel}} (IndexOutOfBoundsException): Index 5 out of bounds (2 times)\n"
+                + "{{schritte[5].titel}} (IllegalArgumentException): not a list\n"
+                + "{{unknown}} (NoSuchMethodException): Process.getUnknown()", errors.getSummary());
+    }
+}
@@ -0,0 +1,97 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.easymock.PowerMock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import de.sub.goobi.persistence.managers.StepManager;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(StepManager.class)
+@PowerMockIgnore({ "javax.management.*", "javax.xml.*", "org.xml.*", "org.w3c.*", "jdk.internal.reflect.*" })
+public class StepQueryTest {
+    private static final String ORDER = "schritte.Reihenfolge, schritte.SchritteID";
+
+    private final StepQuery query = new StepQuery();
+    private Capture<String> filter;
+
+    @Before
+    public void setUp() {
+        filter = EasyMock.newCapture();
+        PowerMock.mockStatic(StepManager.class);
+    }
+
+    private static Process process(List<Step> steps) {
+        Process process = new Process();
+        process.setId(1);
+        process.setSchritte(steps);
+        return process;
+    }
+
+    private static Step step(String title) {
+        Step step = new Step();
+        step.setTitel(title);
+        return step;
+    }
+
+    @Test
+    public void stepsNotLoaded_expectExactQuery() throws Exception {
+        Step scan = step("Scan");
+        EasyMock.expect(StepManager.getSteps(EasyMock.eq(ORDER), EasyMock.capture(filter), EasyMock.eq(1), EasyMock.eq(1), EasyMock.isNull()))
+                .andReturn(List.of(scan));
+        PowerMock.replay(StepManager.class);
+
+        assertSame(scan, query.select(process(new ArrayList<>()), List.of(new CompiledPath.Predicate("titel", "Scan")), 1));
+        // compared as binary string, so neither case nor trailing spaces are ignored like with the collation of the column
+        assertEquals("schritte.ProzesseID = 1 AND BINARY schritte.Titel = X'5363616e'", filter.getValue());
+        PowerMock.verify(StepManager.class);
+    }
+
+    @Test
+    public void quoteInValue_expectHexLiteral() throws Exception {
+        EasyMock.expect(StepManager.getSteps(EasyMock.eq(ORDER), EasyMock.capture(filter), EasyMock.eq(0), EasyMock.eq(1), EasyMock.isNull()))
+                .andReturn(List.of());
+        PowerMock.replay(StepManager.class);
+
+        assertNull(query.select(process(null), List.of(new CompiledPath.Predicate("titel", "x' OR 'a'='a ")), 0));
+        assertEquals("schritte.ProzesseID = 1 AND BINARY schritte.Titel = X'7827204f52202761273d276120'", filter.getValue());
+        PowerMock.verify(StepManager.class);
+    }
+
+    @Test
+    public void stepsLoaded_expectLoadedListUsed() throws Exception {
+        PowerMock.replay(StepManager.class);
+
+        List<Step> steps = new ArrayList<>(List.of(step("Scan"), step("Export")));
+        assertSame(CollectionQuery.NOT_APPLICABLE, query.select(process(steps), List.of(new CompiledPath.Predicate("titel", "scan")), 0));
+        // the path falls back to the loaded list, where the filter compares exactly as well
+        CompiledPath path = CompiledPath.compile("schritte[titel='scan'].titel");
+        assertNull(path.evaluate(process(steps)));
+        assertEquals("Export", CompiledPath.compile("schritte[titel='Export'].titel").evaluate(process(steps)));
+        PowerMock.verify(StepManager.class);
+    }
+
+    @Test
+    public void filterOnColumnWithoutIndex_expectLoadedListUsed() throws Exception {
+        PowerMock.replay(StepManager.class);
+
+        assertSame(CollectionQuery.NOT_APPLICABLE,
+                query.select(process(new ArrayList<>()), List.of(new CompiledPath.Predicate("bearbeitungsbeginn", "2024-01-01")), 0));
+        PowerMock.verify(StepManager.class);
+    }
+}
@@ -0,0 +1,80 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ugh.dl.DigitalDocument;
+import ugh.dl.Fileformat;
+import ugh.dl.Prefs;
+import ugh.fileformats.mets.MetsMods;
+
+public class StructureQueryTest {
+
+    private DigitalDocument digitalDocument;
+
+    @Before
+    public void setUp() throws Exception {
+        String resourcesFolder = "src/test/resources/";
+        if (!Files.exists(Paths.get(resourcesFolder))) {
+            resourcesFolder = "target/test-classes/";
+        }
+        Prefs prefs = new Prefs();
+        prefs.loadPrefs(resourcesFolder + "ruleset.xml");
+        Fileformat fileformat = new MetsMods(prefs);
+        fileformat.read(resourcesFolder + "meta.xml");
+        digitalDocument = fileformat.getDigitalDocument();
+    }
+
+    private String evaluate(String expression) {
+        return StructureQuery.compile(expression).evaluate(digitalDocument);
+    }
+
+    @Test
+    public void countWithTypeFilter_expectMatchingElements() {
+        assertEquals("3", evaluate("count(logical.**[type=Figure])"));
+        assertEquals("10", evaluate("count(physical.*)"));
+    }
+
+    @Test
+    public void joinOfMetadata_expectValuesInDocumentOrder() {
+        assertEquals("Title; Title 2; Title 3", evaluate("join(logical.**[type=Figure].meta.TitleDocMain, '; ')"));
+    }
+
+    @Test
+    public void distinctTypes_expectEachTypeOnce() {
+        assertEquals("Volume, Figure", evaluate("distinct(logical.**)"));
+    }
+
+    @Test
+    public void minAndMax_expectNumericComparison() {
+        assertEquals("8", evaluate("min(physical.*.meta.logicalPageNumber)"));
+        assertEquals("17", evaluate("max(physical.*.meta.logicalPageNumber)"));
+    }
+
+    @Test
+    public void firstAndExists_expectEarlyResult() {
+        assertEquals("Main title volume", evaluate("first(logical.*[type=Volume].meta.TitleDocMain)"));
+        assertEquals("true", evaluate("exists(logical.**[type=Figure])"));
+        assertEquals("false", evaluate("exists(logical.**[type=Map])"));
+        assertEquals("", evaluate("first(logical.**[type=Map].meta.TitleDocMain)"));
+    }
+
+    @Test
+    public void isQuery_expectOnlyAggregations() {
+        assertTrue(StructureQuery.isQuery("count(logical.*)"));
+        assertFalse(StructureQuery.isQuery("schritte[0].titel"));
+        assertFalse(StructureQuery.isQuery("schritte[titel='count(x)'].titel"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pathWithoutRoot_expectIllegalArgumentException() {
+        StructureQuery.compile("count(*.meta.TitleDocMain)");
+    }
+}
@@ -0,0 +1,131 @@
+package de.intranda.goobi.plugins.generateproperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.junit.Test;
+
+public class WriteBehindQueueTest {
+
+    private final List<String> saved = new CopyOnWriteArrayList<>();
+
+    private PropertyChangeSet changes(int processId, String name, String value) {
+        Process process = new Process();
+        process.setId(processId);
+        process.setProperties(new ArrayList<>());
+        PropertyChangeSet changes = new PropertyChangeSet(process);
+        changes.set(name, value);
+        return changes;
+    }
+
+    private void save(GoobiProperty property) {
+        saved.add(property.getPropertyName() + "=" + property.getPropertyValue());
+    }
+
+    @Test
+    public void sameProperty_expectOnlyLastValueWritten() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(this::save, property -> {
+        });
+        CompletableFuture<Void> first = queue.submit(changes(1, "Archive Folder", "old"), 10, 2, 60_000);
+        CompletableFuture<Void> second = queue.submit(changes(1, "Archive Folder", "new"), 10, 2, 60_000);
+        assertEquals(1, queue.getQueueDepth());
+        // the second entry completes the batch
+        CompletableFuture<Void> other = queue.submit(changes(2, "Archive Folder", "other"), 10, 2, 60_000);
+        CompletableFuture.allOf(first, second, other).get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("Archive Folder=new", "Archive Folder=other"), saved);
+        assertEquals(1, queue.getCoalesced());
+        assertEquals(2, queue.getWritten());
+        assertEquals(1, queue.getFlushes());
+    }
+
+    @Test
+    public void singleChange_expectFlushAfterInterval() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(this::save, property -> {
+        });
+        queue.submit(changes(1, "Archive Folder", "value"), 10, 100, 10).get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("Archive Folder=value"), saved);
+        assertEquals(0, queue.getQueueDepth());
+    }
+
+    @Test
+    public void failingWrite_expectExceptionWithCloseDurability() {
+        WriteBehindQueue queue = new WriteBehindQueue(property -> {
+            throw new IllegalStateException("database unavailable");
+        }, property -> {
+        });
+        WriteBehindPropertyWriter writer = new WriteBehindPropertyWriter(queue, WriteBehindPropertyWriter.Durability.CLOSE, 10, 1, 0);
+        try {
+            writer.write(changes(1, "Archive Folder", "value"));
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("database unavailable", e.getMessage());
+        }
+        assertEquals(1, queue.getFailed());
+        assertTrue(saved.isEmpty());
+    }
+
+    @Test
+    public void stoppedWriter_expectWaitingChangesFailedAndLaterChangesWritten() throws Exception {
+        AtomicReference<Thread> writerThread = new AtomicReference<>();
+        CountDownLatch blocked = new CountDownLatch(1);
+        WriteBehindQueue queue = new WriteBehindQueue(property -> {
+            if (writerThread.compareAndSet(null, Thread.currentThread())) {
+                blocked.countDown();
+                // wait until the test interrupts the writer
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.onSpinWait();
+                }
+            }
+            save(property);
+        }, property -> {
+        });
+        CompletableFuture<Void> first = queue.submit(changes(1, "Archive Folder", "first"), 10, 1, 0);
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Void> waiting = queue.submit(changes(2, "Archive Folder", "waiting"), 10, 100, 60_000);
+        writerThread.get().interrupt();
+        writerThread.get().join(10_000);
+        assertFalse(writerThread.get().isAlive());
+        first.get(10, TimeUnit.SECONDS);
+        try {
+            waiting.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        queue.submit(changes(3, "Archive Folder", "later"), 10, 1, 0).get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("Archive Folder=first", "Archive Folder=later"), saved);
+    }
+
+    @Test
+    public void errorDuringWrite_expectWriterKeepsRunning() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(property -> {
+            if ("broken".equals(property.getPropertyValue())) {
+                throw new AssertionError("broken value");
+            }
+            save(property);
+        }, property -> {
+        });
+        CompletableFuture<Void> broken = queue.submit(changes(1, "Archive Folder", "broken"), 10, 1, 0);
+        try {
+            broken.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+        queue.submit(changes(2, "Archive Folder", "value"), 10, 1, 0).get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("Archive Folder=value"), saved);
+    }
+}
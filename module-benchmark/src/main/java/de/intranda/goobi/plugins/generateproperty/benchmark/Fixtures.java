@@ -0,0 +1,66 @@
+package de.intranda.goobi.plugins.generateproperty.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.goobi.beans.Process;
+import org.goobi.beans.Project;
+import org.goobi.beans.Step;
+import org.goobi.beans.User;
+
+/**
+ * Test data shared by all benchmarks. The metadata files are the fixtures of the functional tests in module-base.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Find the test resources of module-base, either from the project root or from within module-benchmark. The folder can be overwritten with
+     * the system property <code>benchmark.resources</code>.
+     */
+    static Path resourcesFolder() {
+        String configured = System.getProperty("benchmark.resources");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        Path folder = Paths.get("module-base/src/test/resources/");
+        if (!Files.exists(folder)) {
+            folder = Paths.get("../module-base/src/test/resources/");
+        }
+        return folder;
+    }
+
+    static Path metadataFile() {
+        return resourcesFolder().resolve("meta.xml");
+    }
+
+    static Path rulesetFile() {
+        return resourcesFolder().resolve("ruleset.xml");
+    }
+
+    static Process createProcess() {
+        Project project = new Project();
+        project.setTitel("GeneratePropertyProject");
+        Process process = new Process();
+        process.setTitel("00469418X");
+        process.setProjekt(project);
+        List<Step> steps = new ArrayList<>();
+        Step step = new Step();
+        step.setReihenfolge(1);
+        step.setProzess(process);
+        step.setTitel("test step");
+        User user = new User();
+        user.setVorname("Firstname");
+        user.setNachname("Lastname");
+        user.setStandort("Handschriften");
+        step.setBearbeitungsbenutzer(user);
+        steps.add(step);
+        process.setSchritte(steps);
+        return process;
+    }
+}
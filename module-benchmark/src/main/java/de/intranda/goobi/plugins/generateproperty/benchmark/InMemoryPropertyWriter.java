@@ -0,0 +1,44 @@
+package de.intranda.goobi.plugins.generateproperty.benchmark;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.goobi.beans.GoobiProperty;
+
+import de.intranda.goobi.plugins.generateproperty.PropertyChangeSet;
+import de.intranda.goobi.plugins.generateproperty.PropertyWriter;
+
+/**
+ * Keeps the written properties in memory instead of saving them with the PropertyManager. Processes are identified by their title.
+ */
+class InMemoryPropertyWriter implements PropertyWriter {
+    private final Map<String, Map<String, String>> values = new ConcurrentHashMap<>();
+
+    @Override
+    public void write(PropertyChangeSet changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        Map<String, String> properties = values.computeIfAbsent(changes.getProcess().getTitel(), title -> new ConcurrentHashMap<>());
+        for (GoobiProperty property : changes.getChanges()) {
+            properties.put(property.getPropertyName(), property.getPropertyValue());
+        }
+        for (GoobiProperty property : changes.getDeletions()) {
+            properties.remove(property.getPropertyName());
+        }
+    }
+
+    /**
+     * @return all written values by process title and property name, sorted
+     */
+    Map<String, Map<String, String>> getValues() {
+        Map<String, Map<String, String>> sorted = new TreeMap<>();
+        values.forEach((process, properties) -> sorted.put(process, new TreeMap<>(properties)));
+        return sorted;
+    }
+
+    void clear() {
+        values.clear();
+    }
+}
@@ -0,0 +1,57 @@
+package de.intranda.goobi.plugins.generateproperty.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ugh.dl.DigitalDocument;
+import ugh.dl.Fileformat;
+import ugh.dl.Prefs;
+import ugh.fileformats.mets.MetsMods;
+
+/**
+ * Loading of the ruleset and the METS file, the most expensive I/O of a step run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataLoadingBenchmark {
+
+    private String rulesetFile;
+    private String metadataFile;
+    private Prefs prefs;
+
+    @Setup
+    public void setUp() throws Exception {
+        rulesetFile = Fixtures.rulesetFile().toString();
+        metadataFile = Fixtures.metadataFile().toString();
+        prefs = new Prefs();
+        prefs.loadPrefs(rulesetFile);
+    }
+
+    @Benchmark
+    public Prefs loadRuleset() throws Exception {
+        Prefs loaded = new Prefs();
+        loaded.loadPrefs(rulesetFile);
+        return loaded;
+    }
+
+    @Benchmark
+    public DigitalDocument readMetadata() throws Exception {
+        Fileformat fileformat = new MetsMods(prefs);
+        fileformat.read(metadataFile);
+        return fileformat.getDigitalDocument();
+    }
+}
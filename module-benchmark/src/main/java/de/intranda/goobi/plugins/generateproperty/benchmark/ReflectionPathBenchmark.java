@@ -0,0 +1,58 @@
+package de.intranda.goobi.plugins.generateproperty.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.goobi.beans.Process;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.intranda.goobi.plugins.generateproperty.CompiledPath;
+import de.intranda.goobi.plugins.generateproperty.ReflectionPathParser;
+
+/**
+ * Evaluation of <code>{{...}}</code> paths, through the cached {@link ReflectionPathParser} entry point and with a path compiled up front.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReflectionPathBenchmark {
+
+    @Param({ "titel", "projekt.titel", "schritte[0].bearbeitungsbenutzer.standort" })
+    public String expression;
+
+    private Process process;
+    private CompiledPath compiledPath;
+
+    @Setup
+    public void setUp() {
+        process = Fixtures.createProcess();
+        compiledPath = CompiledPath.compile(expression);
+    }
+
+    @Benchmark
+    public String parse() throws Exception {
+        return ReflectionPathParser.parse(process, expression);
+    }
+
+    @Benchmark
+    public String compiled() throws Exception {
+        return compiledPath.evaluateToString(process);
+    }
+
+    @Benchmark
+    public String compileAndEvaluate() throws Exception {
+        return CompiledPath.compile(expression).evaluateToString(process);
+    }
+}
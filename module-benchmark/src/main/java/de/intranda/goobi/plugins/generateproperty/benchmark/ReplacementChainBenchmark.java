@@ -0,0 +1,77 @@
+package de.intranda.goobi.plugins.generateproperty.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.digester.plugins.PluginException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.intranda.goobi.plugins.generateproperty.LookupTable;
+import de.intranda.goobi.plugins.generateproperty.PropertyReplacement;
+
+/**
+ * A chain of <code>replace</code> rules used as a mapping table, like <code>Handschriften</code> to <code>01_Handschriften</code>, compared with
+ * the same mapping as a single <code>map</code> element. The rules run with the java or the linear regular expression engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplacementChainBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int rules;
+
+    @Param({ "Handschriften", "Abteilung Historische Drucke und Handschriften, Lesesaal 2" })
+    public String value;
+
+    @Param({ "JAVA", "LINEAR" })
+    public PropertyReplacement.Engine engine;
+
+    private List<PropertyReplacement> replacements;
+    private LookupTable lookupTable;
+
+    @Setup
+    public void setUp() {
+        replacements = new ArrayList<>(rules);
+        for (int i = 1; i < rules; i++) {
+            replacements.add(new PropertyReplacement("Bestand" + i, String.format("%02d_Bestand%d", i, i), engine, 0));
+        }
+        replacements.add(new PropertyReplacement("Handschriften", "01_Handschriften", engine, 0));
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 1; i < rules; i++) {
+            entries.put("Bestand" + i, String.format("%02d_Bestand%d", i, i));
+        }
+        entries.put("Handschriften", "01_Handschriften");
+        lookupTable = new LookupTable(LookupTable.Mode.LITERAL, entries);
+    }
+
+    @Benchmark
+    public String replace() throws PluginException {
+        String result = value;
+        for (PropertyReplacement replacement : replacements) {
+            result = replacement.replace(result);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public String lookupTable() {
+        return lookupTable.apply(value);
+    }
+}
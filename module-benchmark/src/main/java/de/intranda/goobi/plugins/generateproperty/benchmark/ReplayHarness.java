@@ -0,0 +1,206 @@
+package de.intranda.goobi.plugins.generateproperty.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.SubnodeConfiguration;
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
+import org.apache.commons.digester.plugins.PluginException;
+import org.goobi.beans.Process;
+import org.goobi.beans.Project;
+import org.goobi.beans.Step;
+
+import de.intranda.goobi.plugins.generateproperty.GenerationContext;
+import de.intranda.goobi.plugins.generateproperty.PluginConfiguration;
+import de.intranda.goobi.plugins.generateproperty.ProcessMetadata;
+import de.intranda.goobi.plugins.generateproperty.PropertyGenerator;
+import ugh.dl.Prefs;
+import ugh.exceptions.PreferencesException;
+
+/**
+ * Runs a plugin configuration against a corpus of exported processes without a Goobi installation.
+ *
+ * Every sub folder of the corpus is one process and contains its <code>meta.xml</code>, optionally <code>meta_anchor.xml</code> and a
+ * <code>ruleset.xml</code>. Processes without their own ruleset use the default ruleset. The processes are generated with the same code as in a
+ * step run, but the metadata files are read from the corpus and the properties are kept in memory. Processes have no database id, so
+ * <code>{{...}}</code> paths only see the data of the folder and nothing is written to the process journal.
+ */
+class ReplayHarness {
+    private final Path configFile;
+    private final Path corpus;
+    private final String projectTitle;
+    private final String stepTitle;
+    private final Path defaultRuleset;
+    private final Map<Path, Prefs> rulesets = new ConcurrentHashMap<>();
+    private final InMemoryPropertyWriter writer = new InMemoryPropertyWriter();
+
+    /**
+     * The measurements of one pass over the corpus
+     *
+     * @param processes number of processed folders
+     * @param failed number of folders that could not be generated
+     * @param latencyNanos sorted latencies of the successful processes
+     * @param wallNanos duration of the whole pass
+     * @param peakHeapBytes approximate peak heap usage during the pass
+     * @param values the generated values by process and property
+     */
+    record Result(int processes, int failed, long[] latencyNanos, long wallNanos, long peakHeapBytes, Map<String, Map<String, String>> values) {
+
+        double percentileMillis(double percentile) {
+            if (latencyNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * latencyNanos.length) - 1;
+            return latencyNanos[Math.max(index, 0)] / 1_000_000d;
+        }
+
+        double throughput() {
+            return wallNanos > 0 ? processes * 1_000_000_000d / wallNanos : 0;
+        }
+    }
+
+    /**
+     * @param configFile the plugin configuration file
+     * @param corpus the folder with one sub folder per process
+     * @param projectTitle the project used to select the configuration block
+     * @param stepTitle the step used to select the configuration block
+     * @param defaultRuleset ruleset for processes without their own, may be null
+     */
+    ReplayHarness(Path configFile, Path corpus, String projectTitle, String stepTitle, Path defaultRuleset) {
+        this.configFile = configFile;
+        this.corpus = corpus;
+        this.projectTitle = projectTitle;
+        this.stepTitle = stepTitle;
+        this.defaultRuleset = defaultRuleset;
+    }
+
+    /**
+     * Select the configuration block like Goobi does: project and step, then step only, then project only, then the default block
+     */
+    PluginConfiguration loadConfiguration() throws ConfigurationException, PluginException {
+        XMLConfiguration xml = new XMLConfiguration();
+        xml.setDelimiterParsingDisabled(true);
+        xml.load(configFile.toFile());
+        xml.setExpressionEngine(new XPathExpressionEngine());
+        String[][] candidates = { { projectTitle, stepTitle }, { "*", stepTitle }, { projectTitle, "*" }, { "*", "*" } };
+        for (String[] candidate : candidates) {
+            String query = "//config[./project = '" + candidate[0] + "'][./step = '" + candidate[1] + "']";
+            if (!xml.configurationsAt(query).isEmpty()) {
+                SubnodeConfiguration config = xml.configurationAt(query);
+                return PluginConfiguration.parse(config);
+            }
+        }
+        throw new PluginException("No configuration block for project '" + projectTitle + "' and step '" + stepTitle + "' in " + configFile);
+    }
+
+    List<Path> listProcessFolders() throws IOException {
+        try (Stream<Path> folders = Files.list(corpus)) {
+            return folders.filter(folder -> Files.isRegularFile(folder.resolve("meta.xml"))).sorted().toList();
+        }
+    }
+
+    /**
+     * Generate the properties of all processes once
+     *
+     * @param configuration the parsed configuration
+     * @param folders the process folders
+     * @param concurrency number of processes generated at the same time
+     * @return the measurements of this pass
+     */
+    Result run(PluginConfiguration configuration, List<Path> folders, int concurrency) throws InterruptedException {
+        writer.clear();
+        long[] latencies = new long[folders.size()];
+        AtomicInteger successful = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans()
+                .stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(concurrency, 1));
+        List<Future<?>> futures = new ArrayList<>(folders.size());
+        for (Path folder : folders) {
+            futures.add(executor.submit(() -> {
+                try {
+                    long latency = generate(configuration, folder);
+                    latencies[successful.getAndIncrement()] = latency;
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    System.err.println("Cannot generate the properties of " + folder.getFileName() + ": " + e);
+                }
+            }));
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        long wallNanos = System.nanoTime() - start;
+
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        long[] sorted = Arrays.copyOf(latencies, successful.get());
+        Arrays.sort(sorted);
+        return new Result(folders.size(), failed.get(), sorted, wallNanos, peakHeap, writer.getValues());
+    }
+
+    private long generate(PluginConfiguration configuration, Path folder) throws PluginException, PreferencesException {
+        long start = System.nanoTime();
+        Process process = createProcess(folder.getFileName().toString());
+        Step step = process.getSchritte().get(0);
+        ProcessMetadata metadata = ProcessMetadata.offline(process, step, folder.resolve("meta.xml"), getRuleset(folder));
+        GenerationContext context = new GenerationContext(process, step, metadata);
+        writer.write(PropertyGenerator.generate(context, configuration));
+        return System.nanoTime() - start;
+    }
+
+    private Prefs getRuleset(Path folder) throws PreferencesException, PluginException {
+        Path file = folder.resolve("ruleset.xml");
+        if (!Files.isRegularFile(file)) {
+            if (defaultRuleset == null) {
+                throw new PluginException("Neither " + file + " nor a default ruleset exist");
+            }
+            file = defaultRuleset;
+        }
+        Prefs prefs = rulesets.get(file);
+        if (prefs == null) {
+            prefs = new Prefs();
+            prefs.loadPrefs(file.toString());
+            rulesets.put(file, prefs);
+        }
+        return prefs;
+    }
+
+    private Process createProcess(String title) {
+        Project project = new Project();
+        project.setTitel(projectTitle);
+        Process process = new Process();
+        process.setTitel(title);
+        process.setProjekt(project);
+        process.setProperties(new ArrayList<>());
+        Step step = new Step();
+        step.setReihenfolge(1);
+        step.setProzess(process);
+        step.setTitel(stepTitle);
+        List<Step> steps = new ArrayList<>();
+        steps.add(step);
+        process.setSchritte(steps);
+        return process;
+    }
+}
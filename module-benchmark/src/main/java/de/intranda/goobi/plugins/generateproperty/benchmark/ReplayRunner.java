@@ -0,0 +1,161 @@
+package de.intranda.goobi.plugins.generateproperty.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import de.intranda.goobi.plugins.generateproperty.PluginConfiguration;
+
+/**
+ * Command line entry point of the {@link ReplayHarness}. Prints latency percentiles, throughput and peak heap of a pass over the corpus, and
+ * optionally compares the generated values with those of an earlier run.
+ *
+ * <pre>
+ * java -cp module-benchmark/target/benchmarks.jar de.intranda.goobi.plugins.generateproperty.benchmark.ReplayRunner \
+ *     --config plugin_intranda_step_generate_property.xml --corpus /data/export [--project title] [--step title] [--ruleset ruleset.xml]
+ *     [--concurrency 8] [--warmup 1] [--output values.tsv] [--baseline values.tsv]
+ * </pre>
+ *
+ * The value files contain one line per property with the process folder, the property name and the value, separated by tabs. If the values
+ * differ from the baseline, the exit code is 2.
+ */
+public class ReplayRunner {
+    private static final int MAX_PRINTED_DIFFERENCES = 50;
+
+    private ReplayRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (!options.containsKey("config") || !options.containsKey("corpus")) {
+            System.err.println("Usage: ReplayRunner --config <file> --corpus <folder> [--project <title>] [--step <title>] [--ruleset <file>]"
+                    + " [--concurrency <n>] [--warmup <passes>] [--output <file>] [--baseline <file>]");
+            System.exit(1);
+        }
+        String ruleset = options.get("ruleset");
+        ReplayHarness harness = new ReplayHarness(Paths.get(options.get("config")), Paths.get(options.get("corpus")),
+                options.getOrDefault("project", "*"), options.getOrDefault("step", "*"), ruleset != null ? Paths.get(ruleset) : null);
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "1"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "1"));
+
+        PluginConfiguration configuration = harness.loadConfiguration();
+        List<Path> folders = harness.listProcessFolders();
+        for (int i = 0; i < warmup; i++) {
+            harness.run(configuration, folders, concurrency);
+        }
+        ReplayHarness.Result result = harness.run(configuration, folders, concurrency);
+        printResult(System.out, result, concurrency);
+
+        if (options.containsKey("output")) {
+            writeValues(Paths.get(options.get("output")), result.values());
+        }
+        if (options.containsKey("baseline") && printDifferences(System.out, readValues(Paths.get(options.get("baseline"))), result.values()) > 0) {
+            System.exit(2);
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new TreeMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    static void printResult(PrintStream out, ReplayHarness.Result result, int concurrency) {
+        out.printf("Processes:   %d (%d failed), concurrency %d%n", result.processes(), result.failed(), concurrency);
+        out.printf("Throughput:  %.1f processes/s%n", result.throughput());
+        out.printf("Latency:     p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", result.percentileMillis(0.5), result.percentileMillis(0.99),
+                result.percentileMillis(1));
+        out.printf("Peak heap:   %.1f MB%n", result.peakHeapBytes() / (1024d * 1024d));
+    }
+
+    /**
+     * Print all values that were added, removed or changed compared to the baseline
+     *
+     * @return the number of differences
+     */
+    static int printDifferences(PrintStream out, Map<String, Map<String, String>> baseline, Map<String, Map<String, String>> values) {
+        List<String> differences = new ArrayList<>();
+        TreeSet<String> processes = new TreeSet<>(baseline.keySet());
+        processes.addAll(values.keySet());
+        for (String process : processes) {
+            Map<String, String> expected = baseline.getOrDefault(process, Map.of());
+            Map<String, String> actual = values.getOrDefault(process, Map.of());
+            TreeSet<String> names = new TreeSet<>(expected.keySet());
+            names.addAll(actual.keySet());
+            for (String name : names) {
+                String before = expected.get(name);
+                String after = actual.get(name);
+                if (!Objects.equals(before, after)) {
+                    differences.add(process + " / " + name + ": " + quote(before) + " -> " + quote(after));
+                }
+            }
+        }
+        out.printf("Differences: %d%n", differences.size());
+        differences.stream().limit(MAX_PRINTED_DIFFERENCES).forEach(difference -> out.println("  " + difference));
+        if (differences.size() > MAX_PRINTED_DIFFERENCES) {
+            out.printf("  ... and %d more%n", differences.size() - MAX_PRINTED_DIFFERENCES);
+        }
+        return differences.size();
+    }
+
+    private static String quote(String value) {
+        return value == null ? "(none)" : "'" + value + "'";
+    }
+
+    static void writeValues(Path file, Map<String, Map<String, String>> values) throws IOException {
+        List<String> lines = new ArrayList<>();
+        values.forEach((process, properties) -> properties
+                .forEach((name, value) -> lines.add(escape(process) + '\t' + escape(name) + '\t' + escape(value))));
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    static Map<String, Map<String, String>> readValues(Path file) throws IOException {
+        Map<String, Map<String, String>> values = new TreeMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] columns = line.split("\t", -1);
+            if (columns.length != 3) {
+                throw new IOException("Invalid line in " + file + ": " + line);
+            }
+            values.computeIfAbsent(unescape(columns[0]), process -> new TreeMap<>()).put(unescape(columns[1]), unescape(columns[2]));
+        }
+        return values;
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                result.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package de.intranda.goobi.plugins.generateproperty.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.digester.plugins.PluginException;
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.intranda.goobi.plugins.generateproperty.GenerationContext;
+import de.intranda.goobi.plugins.generateproperty.ProcessMetadata;
+import de.intranda.goobi.plugins.generateproperty.PropertyDefinition;
+import de.intranda.goobi.plugins.generateproperty.PropertyReplacement;
+import ugh.dl.Fileformat;
+import ugh.dl.Prefs;
+import ugh.fileformats.mets.MetsMods;
+
+/**
+ * {@link PropertyDefinition#generate(GenerationContext)} for the different kinds of values. The metadata file is loaded once per trial. Each
+ * invocation evaluates the value in a new context, just like a new step run, because the context memoizes resolved values. The cost of creating
+ * the context alone is measured by {@link #newContext()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateBenchmark {
+
+    @Param({ "static", "variable", "combined", "special" })
+    public String template;
+
+    private PropertyDefinition definition;
+    private Process process;
+    private Prefs prefs;
+    private Fileformat fileformat;
+
+    @Setup(Level.Trial)
+    public void loadMetadata() throws Exception {
+        prefs = new Prefs();
+        prefs.loadPrefs(Fixtures.rulesetFile().toString());
+        fileformat = new MetsMods(prefs);
+        fileformat.read(Fixtures.metadataFile().toString());
+        process = Fixtures.createProcess();
+        List<PropertyReplacement> replacements = List.of(new PropertyReplacement("Handschriften", "01_Handschriften"));
+        definition = switch (template) {
+            case "static" -> new PropertyDefinition("Static Text", "This is static", replacements);
+            case "variable" -> new PropertyDefinition("Variable", "{meta.CatalogIDDigital}", replacements);
+            case "combined" -> new PropertyDefinition("Combined", "{meta.CatalogIDDigital}_suffix", replacements);
+            case "special" -> new PropertyDefinition("Archive Folder", "{{schritte[0].bearbeitungsbenutzer.standort}}", replacements);
+            default -> throw new IllegalArgumentException("Unknown template " + template);
+        };
+    }
+
+    @Benchmark
+    public GenerationContext newContext() {
+        return createContext();
+    }
+
+    @Benchmark
+    public String generate() throws PluginException {
+        return definition.generate(createContext());
+    }
+
+    private GenerationContext createContext() {
+        Step step = process.getSchritte().get(0);
+        return new GenerationContext(process, step, ProcessMetadata.preloaded(process, step, fileformat, prefs));
+    }
+}